@@ -0,0 +1,47 @@
+package com.path.stream.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Synthetic Couchbase-style JSON documents for the benchmarks. Documents are
+ * deterministic for a given seed so runs are comparable.
+ */
+final class BenchmarkDocuments {
+
+    private BenchmarkDocuments() {
+    }
+
+    /**
+     * A JSON object of roughly {@code targetBytes} bytes: a few top-level
+     * scalars, a nested object and a growing array of line items.
+     */
+    static String json(int targetBytes, long seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder(targetBytes + 256);
+        json.append("{\"type\":\"order\",\"id\":\"order::").append(random.nextInt(1_000_000)).append('"')
+                .append(",\"status\":\"").append(random.nextBoolean() ? "OPEN" : "SHIPPED").append('"')
+                .append(",\"total\":").append(random.nextInt(100_000) / 100.0)
+                .append(",\"customer\":{\"id\":").append(random.nextInt(100_000))
+                .append(",\"name\":\"Customer ").append(random.nextInt(1000)).append('"')
+                .append(",\"address\":{\"city\":\"City ").append(random.nextInt(100)).append("\",\"country\":\"DE\"}}")
+                .append(",\"meta\":{\"updatedAt\":").append(1_700_000_000_000L + random.nextInt(1_000_000))
+                .append(",\"rev\":").append(random.nextInt(1000)).append('}')
+                .append(",\"items\":[");
+        int items = 0;
+        while (json.length() < targetBytes - 2) {
+            if (items++ > 0) {
+                json.append(',');
+            }
+            json.append("{\"sku\":\"SKU-").append(random.nextInt(100_000))
+                    .append("\",\"qty\":").append(1 + random.nextInt(10))
+                    .append(",\"price\":").append(random.nextInt(10_000) / 100.0)
+                    .append(",\"gift\":").append(random.nextBoolean()).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    static byte[] jsonBytes(int targetBytes, long seed) {
+        return json(targetBytes, seed).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,97 @@
+package com.path.stream.benchmark;
+
+import com.path.stream.app.FingerprintRecord;
+import com.path.stream.app.FingerprintRecordSerde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.MockProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.TaskId;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprint stores and a mock processor context for driving the dedup
+ * transformers outside a running topology.
+ */
+public final class BenchmarkStores {
+
+    public enum Type {
+        IN_MEMORY,
+        ROCKSDB
+    }
+
+    static final String STORE_NAME = "dedup-benchmark";
+
+    final MockProcessorContext context;
+    // Stores are initialized through the new API: RocksDB rejects the old-style init
+    private final org.apache.kafka.streams.processor.api.MockProcessorContext<Object, Object> storeContext;
+    private final File stateDir;
+    private StateStore store;
+
+    BenchmarkStores() throws IOException {
+        this.stateDir = Files.createTempDirectory("dedup-benchmark").toFile();
+        Properties config = new Properties();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, "dedup-benchmark");
+        config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        this.context = new MockProcessorContext(config, new TaskId(0, 0), stateDir);
+        this.storeContext = new org.apache.kafka.streams.processor.api.MockProcessorContext<>(config, new TaskId(0, 0), stateDir);
+        context.setCurrentSystemTimeMs(System.currentTimeMillis());
+    }
+
+    /**
+     * Store layout of the partitioned mode.
+     */
+    KeyValueStore<String, FingerprintRecord> partitioned(Type type) {
+        KeyValueStore<String, FingerprintRecord> kvStore = Stores.keyValueStoreBuilder(
+                supplier(type, false), Serdes.String(), new FingerprintRecordSerde())
+                .withLoggingDisabled()
+                .withCachingDisabled()
+                .build();
+        return init(kvStore);
+    }
+
+    /**
+     * Store layout of the global mode (what a GlobalKTable materializes).
+     */
+    TimestampedKeyValueStore<String, FingerprintRecord> global(Type type) {
+        TimestampedKeyValueStore<String, FingerprintRecord> kvStore = Stores.timestampedKeyValueStoreBuilder(
+                supplier(type, true), Serdes.String(), new FingerprintRecordSerde())
+                .withLoggingDisabled()
+                .withCachingDisabled()
+                .build();
+        return init(kvStore);
+    }
+
+    private static KeyValueBytesStoreSupplier supplier(Type type, boolean timestamped) {
+        if (type == Type.IN_MEMORY) {
+            return Stores.inMemoryKeyValueStore(STORE_NAME);
+        }
+        return timestamped ? Stores.persistentTimestampedKeyValueStore(STORE_NAME) : Stores.persistentKeyValueStore(STORE_NAME);
+    }
+
+    private <S extends StateStore> S init(S kvStore) {
+        kvStore.init(storeContext.getStateStoreContext(), kvStore);
+        context.register(kvStore, null);
+        this.store = kvStore;
+        return kvStore;
+    }
+
+    void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+        try (Stream<java.nio.file.Path> files = Files.walk(stateDir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.path.stream.benchmark;
+
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.ObjectMapper;
+import com.path.custom.kafka.connect.transforms.ConditionalDocumentFilter;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConditionalDocumentFilter.apply for each supported record value type and
+ * for a single comparison versus a compound JEXL expression. Both
+ * expressions match the benchmark documents, so records pass the filter;
+ * {@code convertToMap} adds the conversion of passing records to a Map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConditionalDocumentFilterBenchmark {
+
+    public enum Input {
+        BYTES,
+        STRING,
+        MAP
+    }
+
+    public enum Expression {
+        SIMPLE("type == 'order'"),
+        COMPLEX("type == 'order' && (status == 'OPEN' || status == 'SHIPPED') && total >= 0"
+                + " && customer.address.country == 'DE' && meta.rev < 1000 && customer.id % 1 == 0");
+
+        final String jexl;
+
+        Expression(String jexl) {
+            this.jexl = jexl;
+        }
+    }
+
+    @Param({"BYTES", "STRING", "MAP"})
+    public Input input;
+
+    @Param({"SIMPLE", "COMPLEX"})
+    public Expression expression;
+
+    @Param({"1024", "16384"})
+    public int documentBytes;
+
+    @Param({"false", "true"})
+    public boolean convertToMap;
+
+    private ConditionalDocumentFilter<SourceRecord> filter;
+    private SourceRecord record;
+
+    @Setup
+    public void setUp() throws IOException {
+        filter = new ConditionalDocumentFilter<>();
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConditionalDocumentFilter.EXPR_PROPERTY, expression.jexl);
+        config.put(ConditionalDocumentFilter.CONVERT_TO_MAP_PROPERTY, convertToMap);
+        filter.configure(config);
+
+        String json = BenchmarkDocuments.json(documentBytes, 42);
+        Object value;
+        switch (input) {
+            case BYTES:
+                value = BenchmarkDocuments.jsonBytes(documentBytes, 42);
+                break;
+            case STRING:
+                value = json;
+                break;
+            default:
+                value = new ObjectMapper().readValue(json, Map.class);
+        }
+        record = new SourceRecord(null, null, "benchmark", 0, Schema.STRING_SCHEMA, "order::1", null, value);
+        if (filter.apply(record) == null) {
+            throw new IllegalStateException("Benchmark record does not pass: " + expression.jexl);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        filter.close();
+    }
+
+    @Benchmark
+    public SourceRecord apply() {
+        return filter.apply(record);
+    }
+}
@@ -0,0 +1,79 @@
+package com.path.stream.benchmark;
+
+import com.path.stream.app.DedupProperties;
+import com.path.stream.app.DedupResult;
+import com.path.stream.app.DedupSettings;
+import com.path.stream.app.DedupTransformer;
+import com.path.stream.app.DedupValueFormat;
+import com.path.stream.app.DocumentFingerprinter;
+import com.path.stream.app.FingerprintAlgorithm;
+import com.path.stream.app.FingerprintEngine;
+import com.path.stream.app.FingerprintRecord;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DedupTransformer.transform (partitioned mode) against an in-memory or
+ * RocksDB store holding {@code storedKeys} fingerprints.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupTransformerBenchmark {
+
+    @Param({"IN_MEMORY", "ROCKSDB"})
+    public BenchmarkStores.Type store;
+
+    @Param({"0", "50", "99"})
+    public int rejectPercent;
+
+    @Param({"true", "false"})
+    public boolean keyFilter;
+
+    @Param({"100000"})
+    public int storedKeys;
+
+    @Param({"1024"})
+    public int documentBytes;
+
+    private BenchmarkStores stores;
+    private DedupWorkload workload;
+    private DedupTransformer<byte[]> transformer;
+
+    @Setup
+    public void setUp() throws IOException {
+        DocumentFingerprinter fingerprinter = DocumentFingerprinter.raw(new FingerprintEngine(FingerprintAlgorithm.SHA_256));
+        workload = new DedupWorkload(storedKeys, rejectPercent, documentBytes);
+        stores = new BenchmarkStores();
+        KeyValueStore<String, FingerprintRecord> kvStore = stores.partitioned(store);
+        long now = stores.context.currentSystemTimeMs();
+        for (int i = 0; i < storedKeys; i++) {
+            kvStore.put(workload.storedKeys[i],
+                    FingerprintRecord.next(null, fingerprinter.fingerprint(workload.storedValues[i]), now));
+        }
+
+        DedupProperties.Filter filter = new DedupProperties.Filter();
+        filter.setEnabled(keyFilter);
+        transformer = new DedupTransformer<>(BenchmarkStores.STORE_NAME, null,
+                DedupSettings.builder(DedupValueFormat.BYTES).fingerprints(fingerprinter).filter(filter).build());
+        transformer.init(stores.context);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        transformer.close();
+        stores.close();
+    }
+
+    @Benchmark
+    public DedupResult<byte[]> transform() {
+        String key = workload.key();
+        return transformer.transform(key, workload.nextValue());
+    }
+}
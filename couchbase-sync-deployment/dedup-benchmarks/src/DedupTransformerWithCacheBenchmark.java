@@ -0,0 +1,93 @@
+package com.path.stream.benchmark;
+
+import com.path.stream.app.DedupProperties;
+import com.path.stream.app.DedupResult;
+import com.path.stream.app.DedupSettings;
+import com.path.stream.app.DedupTransformerWithCache;
+import com.path.stream.app.DedupValueFormat;
+import com.path.stream.app.DocumentFingerprinter;
+import com.path.stream.app.FingerprintAlgorithm;
+import com.path.stream.app.FingerprintEngine;
+import com.path.stream.app.FingerprintRecord;
+import com.path.stream.app.KeyBloomFilter;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DedupTransformerWithCache.transform (global mode) against an in-memory or
+ * RocksDB global store. With {@code localCache=false} the cache TTL is zero,
+ * so every duplicate is answered by the store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupTransformerWithCacheBenchmark {
+
+    @Param({"IN_MEMORY", "ROCKSDB"})
+    public BenchmarkStores.Type store;
+
+    @Param({"0", "50", "99"})
+    public int rejectPercent;
+
+    @Param({"true", "false"})
+    public boolean localCache;
+
+    @Param({"true", "false"})
+    public boolean keyFilter;
+
+    @Param({"100000"})
+    public int storedKeys;
+
+    @Param({"1024"})
+    public int documentBytes;
+
+    private BenchmarkStores stores;
+    private DedupWorkload workload;
+    private DedupTransformerWithCache<byte[]> transformer;
+
+    @Setup
+    public void setUp() throws IOException {
+        DocumentFingerprinter fingerprinter = DocumentFingerprinter.raw(new FingerprintEngine(FingerprintAlgorithm.SHA_256));
+        workload = new DedupWorkload(storedKeys, rejectPercent, documentBytes);
+        stores = new BenchmarkStores();
+        TimestampedKeyValueStore<String, FingerprintRecord> globalStore = stores.global(store);
+        DedupProperties.Filter filterSettings = new DedupProperties.Filter();
+        KeyBloomFilter filter = keyFilter ? new KeyBloomFilter(filterSettings) : null;
+        long now = stores.context.currentSystemTimeMs();
+        for (int i = 0; i < storedKeys; i++) {
+            FingerprintRecord record = FingerprintRecord.next(null, fingerprinter.fingerprint(workload.storedValues[i]), now);
+            globalStore.put(workload.storedKeys[i], ValueAndTimestamp.make(record, now));
+            if (filter != null) {
+                filter.put(workload.storedKeys[i]);
+            }
+        }
+
+        DedupProperties.Cache cache = new DedupProperties.Cache();
+        if (!localCache) {
+            cache.setTtl(Duration.ZERO);
+        }
+        transformer = new DedupTransformerWithCache<>(BenchmarkStores.STORE_NAME,
+                DedupSettings.builder(DedupValueFormat.BYTES).fingerprints(fingerprinter).cache(cache).keyFilter(filter).build());
+        transformer.init(stores.context);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        transformer.close();
+        stores.close();
+    }
+
+    @Benchmark
+    public DedupResult<byte[]> transform() {
+        String key = workload.key();
+        return transformer.transform(key, workload.nextValue());
+    }
+}
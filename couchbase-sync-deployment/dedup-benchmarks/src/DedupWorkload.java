@@ -0,0 +1,69 @@
+package com.path.stream.benchmark;
+
+import java.util.Random;
+
+/**
+ * Pre-generated record stream with a fixed share of duplicates.
+ * <p>
+ * Duplicates reuse one of {@code storedKeys} keys with the document already
+ * recorded for it. Every other record hits one of a small set of "changing"
+ * keys whose value alternates between two documents on every pass, so it is
+ * accepted no matter how long the benchmark runs and the store does not grow.
+ */
+final class DedupWorkload {
+
+    private static final int SCHEDULE_LENGTH = 4096;
+    private static final int DOCUMENT_POOL = 64;
+
+    final String[] storedKeys;
+    final byte[][] storedValues;
+
+    private final String[] keys = new String[SCHEDULE_LENGTH];
+    private final byte[][] values = new byte[SCHEDULE_LENGTH][];
+    private final byte[][] changedValues = new byte[SCHEDULE_LENGTH][];
+    private int cursor;
+    private boolean odd;
+
+    DedupWorkload(int storedKeyCount, int rejectPercent, int documentBytes) {
+        byte[][] pool = new byte[DOCUMENT_POOL][];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = BenchmarkDocuments.jsonBytes(documentBytes, i);
+        }
+        storedKeys = new String[storedKeyCount];
+        storedValues = new byte[storedKeyCount][];
+        for (int i = 0; i < storedKeyCount; i++) {
+            storedKeys[i] = "order::" + i;
+            storedValues[i] = pool[i % DOCUMENT_POOL];
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < SCHEDULE_LENGTH; i++) {
+            if (random.nextInt(100) < rejectPercent) {
+                int k = random.nextInt(storedKeyCount);
+                keys[i] = storedKeys[k];
+                values[i] = storedValues[k];
+                changedValues[i] = storedValues[k];
+            } else {
+                keys[i] = "changing::" + i;
+                values[i] = pool[i % DOCUMENT_POOL];
+                changedValues[i] = pool[(i + 1) % DOCUMENT_POOL];
+            }
+        }
+    }
+
+    String key() {
+        return keys[cursor];
+    }
+
+    /**
+     * Value for the current key; advances to the next record.
+     */
+    byte[] nextValue() {
+        byte[] value = odd ? changedValues[cursor] : values[cursor];
+        if (++cursor == SCHEDULE_LENGTH) {
+            cursor = 0;
+            odd = !odd;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,49 @@
+package com.path.stream.benchmark;
+
+import com.path.stream.app.DocumentFingerprinter;
+import com.path.stream.app.Fingerprint;
+import com.path.stream.app.FingerprintAlgorithm;
+import com.path.stream.app.FingerprintEngine;
+import com.path.stream.app.IgnoredJsonPaths;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * computeHash: cost of fingerprinting one record value, per document size,
+ * hash algorithm and fingerprint mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FingerprintBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int documentBytes;
+
+    @Param({"SHA_256", "MURMUR3_128"})
+    public FingerprintAlgorithm algorithm;
+
+    @Param({"RAW", "CANONICAL"})
+    public DocumentFingerprinter.Mode mode;
+
+    private DocumentFingerprinter fingerprinter;
+    private byte[] document;
+
+    @Setup
+    public void setUp() {
+        FingerprintEngine engine = new FingerprintEngine(algorithm);
+        fingerprinter = mode == DocumentFingerprinter.Mode.RAW
+                ? DocumentFingerprinter.raw(engine)
+                : DocumentFingerprinter.canonical(engine, IgnoredJsonPaths.NONE);
+        document = BenchmarkDocuments.jsonBytes(documentBytes, 42);
+    }
+
+    @Benchmark
+    public Fingerprint computeHash() {
+        return fingerprinter.fingerprint(document);
+    }
+}
@@ -0,0 +1,211 @@
+package com.path.stream.loadtest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic stream of Couchbase-like change events, as the Kafka
+ * connector publishes them: the document key, the document body (null for
+ * a delete) and the document's CAS in a {@code cas} header.
+ * <p>
+ * Each event is one of:
+ * <ul>
+ *   <li>a duplicate: a live document re-sent with its current revision, as
+ *   after a connector restart or DCP rollback;</li>
+ *   <li>the start of a burst: {@code burst-length} successive new revisions
+ *   of one document;</li>
+ *   <li>a delete of a live document;</li>
+ *   <li>an update: a new revision of a document, creating it if it is not
+ *   live.</li>
+ * </ul>
+ * Keys are drawn uniformly or from a Zipf distribution. Duplicates and
+ * deletes that draw a key that is not live become updates, so the actual
+ * mix, reported by {@link #count}, is close to but not exactly the
+ * configured one. Document sizes are drawn once per key.
+ */
+final class ChangeEventGenerator {
+
+    static final String CAS_HEADER = "cas";
+
+    enum Kind {
+        UPDATE,
+        BURST,
+        DUPLICATE,
+        DELETE
+    }
+
+    /**
+     * One change event and whether the dedup topology is expected to publish it.
+     */
+    static final class ChangeEvent {
+        final Kind kind;
+        final String key;
+        final byte[] value;
+        final byte[] cas;
+        final long timestamp;
+
+        ChangeEvent(Kind kind, String key, byte[] value, long cas, long timestamp) {
+            this.kind = kind;
+            this.key = key;
+            this.value = value;
+            this.cas = ByteBuffer.allocate(Long.BYTES).putLong(cas).array();
+            this.timestamp = timestamp;
+        }
+
+        boolean expectsOutput() {
+            return kind != Kind.DUPLICATE;
+        }
+    }
+
+    private static final int MIN_DOCUMENT_BYTES = 128;
+    private static final int MAX_DOCUMENT_BYTES = 1 << 20;
+    private static final String[] STATUSES = {"PLANNED", "ARRIVED", "IN_PROGRESS", "FINISHED", "CANCELLED"};
+
+    private final LoadTestSettings settings;
+    private final Random random;
+    private final double[] popularity; // cumulative, null when uniform
+    private final int[] revisions;
+    private final int[] sizes;
+    private final long[] cas;
+    private final boolean[] live;
+    private final long[] counts = new long[Kind.values().length];
+    private final double intervalMs;
+
+    private double clockMs;
+    private int burstKey = -1;
+    private int burstRemaining;
+
+    ChangeEventGenerator(LoadTestSettings settings, long startMs) {
+        this.settings = settings;
+        this.random = new Random(settings.seed);
+        this.popularity = settings.keySkew > 0 ? zipf(settings.keys, settings.keySkew) : null;
+        this.revisions = new int[settings.keys];
+        this.sizes = new int[settings.keys];
+        this.cas = new long[settings.keys];
+        this.live = new boolean[settings.keys];
+        this.intervalMs = 1000.0 / settings.eventsPerSecond;
+        this.clockMs = startMs;
+    }
+
+    ChangeEvent next() {
+        clockMs += intervalMs;
+        long now = (long) clockMs;
+        if (burstRemaining > 0) {
+            burstRemaining--;
+            return update(Kind.BURST, burstKey, now);
+        }
+
+        double roll = random.nextDouble();
+        int key = drawKey();
+        if (roll < settings.duplicateRatio) {
+            return live[key] ? event(Kind.DUPLICATE, key, document(key), now) : update(Kind.UPDATE, key, now);
+        }
+        roll -= settings.duplicateRatio;
+        if (roll < settings.burstRatio) {
+            burstKey = key;
+            burstRemaining = settings.burstLength - 1;
+            return update(Kind.BURST, key, now);
+        }
+        roll -= settings.burstRatio;
+        if (roll < settings.deleteRatio && live[key]) {
+            live[key] = false;
+            cas[key] = casAfter(cas[key], now);
+            return event(Kind.DELETE, key, null, now);
+        }
+        return update(Kind.UPDATE, key, now);
+    }
+
+    /**
+     * Moves the clock on without events.
+     */
+    void skip(long ms) {
+        clockMs += ms;
+    }
+
+    long count(Kind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    /**
+     * Documents currently live, i.e. the fingerprints a store would hold without retention.
+     */
+    long liveKeys() {
+        long count = 0;
+        for (boolean isLive : live) {
+            count += isLive ? 1 : 0;
+        }
+        return count;
+    }
+
+    private ChangeEvent update(Kind kind, int key, long now) {
+        revisions[key]++;
+        live[key] = true;
+        cas[key] = casAfter(cas[key], now);
+        if (sizes[key] == 0) {
+            double size = settings.documentBytes * Math.exp(settings.sizeSigma * random.nextGaussian());
+            sizes[key] = (int) Math.max(MIN_DOCUMENT_BYTES, Math.min(MAX_DOCUMENT_BYTES, size));
+        }
+        return event(kind, key, document(key), now);
+    }
+
+    private ChangeEvent event(Kind kind, int key, byte[] value, long now) {
+        counts[kind.ordinal()]++;
+        return new ChangeEvent(kind, "encounter::" + key, value, cas[key], now);
+    }
+
+    /**
+     * Couchbase CAS values are nanosecond timestamps and increase with every
+     * mutation of a document.
+     */
+    private long casAfter(long previous, long now) {
+        return Math.max(previous + 1, now * 1_000_000L + random.nextInt(1_000_000));
+    }
+
+    private int drawKey() {
+        if (popularity == null) {
+            return random.nextInt(settings.keys);
+        }
+        int index = Arrays.binarySearch(popularity, random.nextDouble());
+        return Math.min(settings.keys - 1, index < 0 ? -index - 1 : index);
+    }
+
+    private static double[] zipf(int keys, double exponent) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keys; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * The key's current revision; the same revision always yields the same bytes.
+     */
+    private byte[] document(int key) {
+        Random content = new Random(settings.seed * 31 + key * 1_000_003L + revisions[key]);
+        StringBuilder json = new StringBuilder(sizes[key] + 256);
+        json.append("{\"type\":\"encounter\",\"id\":\"encounter::").append(key).append('"')
+                .append(",\"status\":\"").append(STATUSES[content.nextInt(STATUSES.length)]).append('"')
+                .append(",\"patient\":{\"id\":\"patient::").append(key % 50_000).append('"')
+                .append(",\"ward\":").append(content.nextInt(40)).append('}')
+                .append(",\"_sync\":{\"rev\":\"").append(revisions[key]).append('-').append(Long.toHexString(cas[key])).append("\"}")
+                .append(",\"meta\":{\"cas\":").append(cas[key]).append(",\"rev\":").append(revisions[key]).append('}')
+                .append(",\"observations\":[");
+        int observations = 0;
+        while (json.length() < sizes[key] - 2) {
+            if (observations++ > 0) {
+                json.append(',');
+            }
+            json.append("{\"code\":\"OBS-").append(content.nextInt(10_000))
+                    .append("\",\"value\":").append(content.nextInt(100_000) / 100.0)
+                    .append(",\"final\":").append(content.nextBoolean()).append('}');
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,347 @@
+package com.path.stream.loadtest;
+
+import com.path.stream.app.BatchHasher;
+import com.path.stream.app.DedupProperties;
+import com.path.stream.app.DedupStreamsApplication;
+import com.path.stream.app.DedupTopicMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.test.TestRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Runs the dedup topologies built by
+ * {@link DedupStreamsApplication#buildDedupStream} against a stream of
+ * generated Couchbase change events and reports throughput, latency, store
+ * size and heap usage. Each mode gets a fresh {@link TopologyTestDriver}
+ * with a temporary state directory. In global mode the
+ * driver applies the fingerprint topic to the global store within each
+ * record's processing, as the global thread would.
+ * <p>
+ * Time is simulated: record timestamps and the wall clock of the topology
+ * advance at {@code events-per-second}, so cache TTLs, expiry sweeps and
+ * batch lingers behave as in production at that rate, however fast the
+ * events are actually processed.
+ * <p>
+ * The driver commits after every record. With RocksDB stores every commit
+ * flushes the memtable to a new file, which dominates the processing time,
+ * so the stores are in memory unless {@code store-type=rocksdb} is given.
+ * In-memory stores live on the heap and are part of the heap figures.
+ * <p>
+ * Arguments are {@code --name=value} pairs, see {@link LoadTestSettings}
+ * and the module README.
+ */
+public class DedupLoadTest {
+
+    private static final String INPUT_TOPIC = "cb.encounters";
+    private static final String OUTPUT_TOPIC = "dedup.encounters";
+    private static final String SENT_HEADER = "loadtest-sent-nanos";
+    private static final int SLICES = 20;
+    private static final long FLUSH_MS = Duration.ofMinutes(1).toMillis();
+    private static final int CHANGELOG_DRAIN_INTERVAL = 1000;
+
+    private final LoadTestSettings settings;
+
+    DedupLoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.parse(args);
+        System.out.println("Load test: " + settings);
+        DedupLoadTest loadTest = new DedupLoadTest(settings);
+        for (DedupProperties.Mode mode : settings.modes) {
+            loadTest.run(mode);
+        }
+    }
+
+    void run(DedupProperties.Mode mode) throws Exception {
+        DedupProperties properties = new DedupProperties();
+        properties.setMode(mode);
+        properties.setStoreType(settings.storeType);
+        properties.getBatch().setEnabled(settings.batch && mode == DedupProperties.Mode.PARTITIONED);
+
+        Properties mappings = new Properties();
+        mappings.setProperty(INPUT_TOPIC, OUTPUT_TOPIC);
+        settings.options.forEach((option, value) -> mappings.setProperty(INPUT_TOPIC + "." + option, value));
+        DedupTopicMapper mapper = new DedupTopicMapper(mappings);
+
+        DedupStreamsApplication application = new DedupStreamsApplication();
+        StreamsBuilder builder = new StreamsBuilder();
+        BatchHasher hasher = application.dedupBatchHasher(properties);
+        application.buildDedupStream(builder, mapper, properties, hasher, null); // no broker to check fingerprint topics on
+
+        Path stateDir = Files.createTempDirectory("dedup-loadtest");
+        Properties config = application.kafkaStreamsConfig(properties).asProperties();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, "dedup-loadtest");
+        config.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+
+        long startMs = System.currentTimeMillis();
+        ChangeEventGenerator generator = new ChangeEventGenerator(settings, startMs);
+        try (hasher; TopologyTestDriver driver = new TopologyTestDriver(builder.build(), config, Instant.ofEpochMilli(startMs))) {
+            Run run = new Run(driver, mapper.getMapping(INPUT_TOPIC).getFingerprintTopic(), startMs);
+
+            for (int i = 0; i < settings.warmupRecords; i++) {
+                run.pipe(generator.next(), false);
+            }
+            // Let records still buffered by the warm-up out before measuring
+            run.advanceTo(run.wallClockMs + FLUSH_MS, false);
+            generator.skip(FLUSH_MS);
+            run.drainChangelogs(false);
+
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            Metrics.addRegistry(registry);
+            resetHeapPeaks();
+            long[] generated = new long[ChangeEventGenerator.Kind.values().length];
+            for (ChangeEventGenerator.Kind kind : ChangeEventGenerator.Kind.values()) {
+                generated[kind.ordinal()] = generator.count(kind);
+            }
+
+            int sliceSize = Math.max(1, settings.records / SLICES);
+            double slowestSlice = Double.MAX_VALUE;
+            long sliceStart = run.driverNanos;
+            for (int i = 1; i <= settings.records; i++) {
+                run.pipe(generator.next(), true);
+                if (i % CHANGELOG_DRAIN_INTERVAL == 0) {
+                    run.drainChangelogs(true);
+                }
+                if (i % sliceSize == 0) {
+                    slowestSlice = Math.min(slowestSlice, sliceSize / seconds(run.driverNanos - sliceStart));
+                    sliceStart = run.driverNanos;
+                }
+            }
+            // Let buffered records (batches, coalescing) out
+            run.advanceTo(run.wallClockMs + FLUSH_MS, true);
+            run.drainChangelogs(true);
+
+            StringBuilder report = new StringBuilder();
+            line(report, "mode", "%s%s, %s stores, options %s", mode, properties.getBatch().isEnabled() ? " (batched)" : "",
+                    settings.storeType, settings.options);
+            line(report, "records", "%d in %.2f s driver time (%.2f s simulated)", settings.records,
+                    seconds(run.driverNanos), settings.records / (double) settings.eventsPerSecond);
+            line(report, "throughput", "%.0f records/s, slowest %d%% slice %.0f records/s",
+                    settings.records / seconds(run.driverNanos), 100 / SLICES, slowestSlice);
+            line(report, "latency", "p50 %s, p99 %s, p99.9 %s, max %s",
+                    micros(run.latency.getValueAtPercentile(50)), micros(run.latency.getValueAtPercentile(99)),
+                    micros(run.latency.getValueAtPercentile(99.9)), micros(run.latency.getMaxValue()));
+            StringBuilder mix = new StringBuilder();
+            for (ChangeEventGenerator.Kind kind : ChangeEventGenerator.Kind.values()) {
+                mix.append(mix.length() == 0 ? "" : ", ").append(kind.name().toLowerCase(Locale.ROOT)).append('=')
+                        .append(generator.count(kind) - generated[kind.ordinal()]);
+            }
+            line(report, "generated", "%s", mix);
+            line(report, "published", "%d (expected %d), %d fingerprint records, %d changelog records",
+                    run.published, run.expected, run.fingerprints, run.changelogRecords);
+            line(report, "decisions", "%s", decisions(registry));
+            line(report, "stores", "%s; %d live documents; state dir %.1f MB", stores(driver), generator.liveKeys(),
+                    directorySize(stateDir) / 1e6);
+            line(report, "heap", "peak %.0f MB, retained after GC %.0f MB",
+                    heapPeak() / 1e6, retainedHeap() / 1e6);
+            System.out.print(report);
+            Metrics.removeRegistry(registry);
+        } finally {
+            deleteDirectory(stateDir);
+        }
+    }
+
+    /**
+     * The driver, its topics and what was measured against them.
+     */
+    private static final class Run {
+
+        private final TopologyTestDriver driver;
+        private final TestInputTopic<String, byte[]> input;
+        private final TestOutputTopic<String, byte[]> output;
+        private final TestOutputTopic<String, byte[]> fingerprintOutput;
+        private final String fingerprintTopic;
+        private final Map<String, TestOutputTopic<byte[], byte[]>> changelogs = new HashMap<>();
+        private final Histogram latency = new Histogram(3);
+
+        long wallClockMs;
+        long driverNanos;
+        long published;
+        long expected;
+        long fingerprints;
+        long changelogRecords;
+
+        Run(TopologyTestDriver driver, String fingerprintTopic, long startMs) {
+            this.driver = driver;
+            this.input = driver.createInputTopic(INPUT_TOPIC, new StringSerializer(), new ByteArraySerializer());
+            this.output = driver.createOutputTopic(OUTPUT_TOPIC, new StringDeserializer(), new ByteArrayDeserializer());
+            this.fingerprintOutput = driver.createOutputTopic(fingerprintTopic, new StringDeserializer(), new ByteArrayDeserializer());
+            this.fingerprintTopic = fingerprintTopic;
+            this.wallClockMs = startMs;
+        }
+
+        /**
+         * Hands one event to the driver. A published record's latency lasts
+         * until its output record is available, which for batched or
+         * coalesced records may be after later events were piped; a
+         * duplicate's lasts until the driver returns.
+         */
+        void pipe(ChangeEventGenerator.ChangeEvent event, boolean measure) {
+            long start = System.nanoTime();
+            advanceTo(event.timestamp, measure);
+            RecordHeaders headers = new RecordHeaders();
+            headers.add(ChangeEventGenerator.CAS_HEADER, event.cas);
+            headers.add(SENT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(start).array());
+            input.pipeInput(new TestRecord<>(event.key, event.value, headers, Instant.ofEpochMilli(event.timestamp)));
+            drain(measure);
+            long end = System.nanoTime();
+            if (measure) {
+                driverNanos += end - start;
+                expected += event.expectsOutput() ? 1 : 0;
+                if (!event.expectsOutput()) {
+                    latency.recordValue(end - start);
+                }
+            }
+        }
+
+        void advanceTo(long timestampMs, boolean measure) {
+            if (timestampMs > wallClockMs) {
+                driver.advanceWallClockTime(Duration.ofMillis(timestampMs - wallClockMs));
+                wallClockMs = timestampMs;
+                drain(measure);
+            }
+        }
+
+        private void drain(boolean measure) {
+            while (!output.isEmpty()) {
+                TestRecord<String, byte[]> record = output.readRecord();
+                if (measure) {
+                    published++;
+                    Header sent = record.headers().lastHeader(SENT_HEADER);
+                    if (sent != null) {
+                        latency.recordValue(System.nanoTime() - ByteBuffer.wrap(sent.value()).getLong());
+                    }
+                }
+            }
+            while (!fingerprintOutput.isEmpty()) {
+                fingerprintOutput.readRecord();
+                fingerprints += measure ? 1 : 0;
+            }
+        }
+
+        /**
+         * The driver keeps every record written to a topic until it is read,
+         * changelogs included.
+         */
+        void drainChangelogs(boolean measure) {
+            for (String topic : driver.producedTopicNames()) {
+                if (topic.equals(OUTPUT_TOPIC) || topic.equals(fingerprintTopic)) {
+                    continue;
+                }
+                TestOutputTopic<byte[], byte[]> changelog = changelogs.computeIfAbsent(topic,
+                        name -> driver.createOutputTopic(name, new ByteArrayDeserializer(), new ByteArrayDeserializer()));
+                long records = changelog.getQueueSize();
+                changelog.readRecordsToList();
+                changelogRecords += measure ? records : 0;
+            }
+        }
+    }
+
+    private static String decisions(SimpleMeterRegistry registry) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Counter counter : registry.find("dedup.records").tag("topic", INPUT_TOPIC).counters()) {
+            if (counter.count() > 0) {
+                counts.put(counter.getId().getTag("decision"), (long) counter.count());
+            }
+        }
+        return counts.toString();
+    }
+
+    private static String stores(TopologyTestDriver driver) {
+        StringBuilder stores = new StringBuilder();
+        for (Map.Entry<String, StateStore> store : new TreeMap<>(driver.getAllStateStores()).entrySet()) {
+            if (store.getValue() instanceof KeyValueStore) {
+                stores.append(stores.length() == 0 ? "" : ", ").append(store.getKey()).append(" ~")
+                        .append(((KeyValueStore<?, ?>) store.getValue()).approximateNumEntries()).append(" entries");
+            }
+        }
+        return stores.toString();
+    }
+
+    private static void resetHeapPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Sum of the peaks of the heap pools, an upper bound of the peak heap usage.
+     */
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long retainedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.map(Path::toFile).filter(File::isFile).mapToLong(File::length).sum();
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return Math.max(nanos, 1) / 1e9;
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f us", nanos / 1e3);
+    }
+
+    private static void line(StringBuilder report, String label, String format, Object... args) {
+        report.append(String.format(Locale.ROOT, "  %-11s ", label)).append(String.format(Locale.ROOT, format, args)).append('\n');
+    }
+}
@@ -0,0 +1,148 @@
+package com.path.stream.loadtest;
+
+import com.path.stream.app.DedupProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Load test parameters, given on the command line as {@code --name=value}.
+ * Workload parameters shape the generated change events; the rest select
+ * the topology under test. Arguments starting with {@code --option.} are
+ * passed on as per-topic mapping options, e.g.
+ * {@code --option.fingerprint=canonical}.
+ */
+final class LoadTestSettings {
+
+    // Topologies to run, one after the other
+    List<DedupProperties.Mode> modes = Arrays.asList(DedupProperties.Mode.PARTITIONED, DedupProperties.Mode.GLOBAL);
+
+    // Partitioned mode: deduplicate in micro-batches
+    boolean batch = false;
+
+    // The driver commits after every record, which flushes RocksDB stores every time
+    DedupProperties.StoreType storeType = DedupProperties.StoreType.IN_MEMORY;
+
+    // Measured change events, and unmeasured ones before them to warm up the JIT and the stores
+    int records = 1_000_000;
+    int warmupRecords = 100_000;
+
+    // Distinct document keys, and the Zipf exponent of key popularity (0 = uniform)
+    int keys = 100_000;
+    double keySkew = 0.0;
+
+    // Share of events that re-send a document's current revision unchanged
+    double duplicateRatio = 0.5;
+
+    // Share of events that start a burst of burstLength successive updates of one key
+    double burstRatio = 0.01;
+    int burstLength = 20;
+
+    // Share of events that delete a document
+    double deleteRatio = 0.01;
+
+    // Document size: log-normal with this median and sigma, drawn once per key
+    int documentBytes = 2048;
+    double sizeSigma = 0.5;
+
+    // Simulated event rate; sets the wall clock and record timestamps seen by the topology
+    int eventsPerSecond = 5_000;
+
+    long seed = 42;
+
+    // Per-topic options of the load test mapping
+    final Map<String, String> options = new LinkedHashMap<>();
+
+    static LoadTestSettings parse(String[] args) {
+        LoadTestSettings settings = new LoadTestSettings();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            if (name.startsWith("option.")) {
+                settings.options.put(name.substring("option.".length()), value);
+                continue;
+            }
+            switch (name) {
+                case "mode":
+                    settings.modes = modes(value);
+                    break;
+                case "batch":
+                    settings.batch = Boolean.parseBoolean(value);
+                    break;
+                case "store-type":
+                    settings.storeType = DedupProperties.StoreType.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+                    break;
+                case "records":
+                    settings.records = Integer.parseInt(value);
+                    break;
+                case "warmup-records":
+                    settings.warmupRecords = Integer.parseInt(value);
+                    break;
+                case "keys":
+                    settings.keys = Integer.parseInt(value);
+                    break;
+                case "key-skew":
+                    settings.keySkew = Double.parseDouble(value);
+                    break;
+                case "duplicate-ratio":
+                    settings.duplicateRatio = Double.parseDouble(value);
+                    break;
+                case "burst-ratio":
+                    settings.burstRatio = Double.parseDouble(value);
+                    break;
+                case "burst-length":
+                    settings.burstLength = Integer.parseInt(value);
+                    break;
+                case "delete-ratio":
+                    settings.deleteRatio = Double.parseDouble(value);
+                    break;
+                case "document-bytes":
+                    settings.documentBytes = Integer.parseInt(value);
+                    break;
+                case "size-sigma":
+                    settings.sizeSigma = Double.parseDouble(value);
+                    break;
+                case "events-per-second":
+                    settings.eventsPerSecond = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    settings.seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown load test setting: " + name);
+            }
+        }
+        if (settings.keys <= 0 || settings.records <= 0 || settings.eventsPerSecond <= 0) {
+            throw new IllegalArgumentException("keys, records and events-per-second must be positive");
+        }
+        if (settings.duplicateRatio + settings.burstRatio + settings.deleteRatio > 1) {
+            throw new IllegalArgumentException("duplicate-ratio + burst-ratio + delete-ratio must not exceed 1");
+        }
+        return settings;
+    }
+
+    private static List<DedupProperties.Mode> modes(String value) {
+        List<DedupProperties.Mode> modes = new ArrayList<>();
+        for (String mode : value.split(",")) {
+            modes.add(DedupProperties.Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)));
+        }
+        return modes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "records=%d (+%d warm-up), keys=%d, key-skew=%.2f, duplicates=%.2f, bursts=%.3f x %d, deletes=%.3f, "
+                        + "document=%d B (sigma %.2f), %d events/s, seed=%d, batch=%s, stores=%s, options=%s",
+                records, warmupRecords, keys, keySkew, duplicateRatio, burstRatio, burstLength, deleteRatio,
+                documentBytes, sizeSigma, eventsPerSecond, seed, batch, storeType, options);
+    }
+}
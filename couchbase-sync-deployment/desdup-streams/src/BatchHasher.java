@@ -0,0 +1,99 @@
+package com.path.stream.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fingerprints the values of a batch, splitting large batches into slices
+ * that are hashed on a fixed pool of daemon threads while the calling stream
+ * thread hashes the last slice. The pool is bounded and shared by all tasks,
+ * so hashing never uses more than {@code threads} extra cores.
+ * <p>
+ * Hashing is thread-safe: {@link FingerprintEngine} and
+ * {@link CanonicalJsonFingerprinter} keep their hashers per thread.
+ */
+public final class BatchHasher implements AutoCloseable {
+
+    // Below this many values per slice the hand-off costs more than it saves
+    private static final int MIN_SLICE = 32;
+
+    private final ExecutorService pool;
+    private final int threads;
+
+    /**
+     * @param threads pool size; 0 hashes every batch on the calling thread
+     */
+    public BatchHasher(int threads) {
+        this.threads = Math.max(0, threads);
+        if (this.threads == 0) {
+            this.pool = null;
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "dedup-hash-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param members receives the member hashes of each value, or null
+     */
+    public <V> Fingerprint[] fingerprint(DedupValueFormat<V> format, DocumentFingerprinter fingerprinter,
+                                         List<V> values, MemberHashes[] members, DedupMetrics metrics) {
+        Fingerprint[] hashes = new Fingerprint[values.size()];
+        int slices = pool == null ? 1 : Math.min(threads + 1, Math.max(1, values.size() / MIN_SLICE));
+        if (slices == 1) {
+            hash(format, fingerprinter, values, members, metrics, hashes, 0, values.size());
+            return hashes;
+        }
+
+        int sliceSize = (values.size() + slices - 1) / slices;
+        List<Future<?>> pending = new ArrayList<>(slices - 1);
+        for (int from = 0; from + sliceSize < values.size(); from += sliceSize) {
+            int start = from;
+            int end = from + sliceSize;
+            pending.add(pool.submit(() -> hash(format, fingerprinter, values, members, metrics, hashes, start, end)));
+        }
+        hash(format, fingerprinter, values, members, metrics, hashes, pending.size() * sliceSize, values.size());
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while hashing a batch", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new IllegalStateException("Failed to hash a batch", e.getCause());
+            }
+        }
+        return hashes;
+    }
+
+    private static <V> void hash(DedupValueFormat<V> format, DocumentFingerprinter fingerprinter, List<V> values,
+                                 MemberHashes[] members, DedupMetrics metrics, Fingerprint[] hashes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            MemberHashes.Builder builder = members == null ? null : new MemberHashes.Builder();
+            long hashStart = System.nanoTime();
+            hashes[i] = format.fingerprint(fingerprinter, values.get(i), builder);
+            metrics.recordHash(hashStart);
+            if (builder != null) {
+                members[i] = builder.build();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
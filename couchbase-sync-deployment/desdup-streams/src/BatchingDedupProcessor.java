@@ -0,0 +1,340 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * =============================================================
+ * BatchingDedupProcessor
+ * =============================================================
+ * Partitioned dedup in micro-batches. Records are buffered per task until
+ * {@code dedup.batch.max-records} are collected or {@code dedup.batch.linger}
+ * has passed; the batch is then
+ * 1. hashed at once, in parallel on the shared {@link BatchHasher} pool,
+ * 2. resolved with one store read per distinct key,
+ * 3. decided in offset order, so that repeated versions of a key within the
+ *    batch are compared with each other rather than with the store,
+ * 4. written with a single {@code putAll} (one RocksDB write batch) holding
+ *    the latest record of each accepted key,
+ * 5. forwarded in offset order.
+ * Decisions are the same as {@link DedupTransformer}'s, including retention,
+ * the per-task key filter, the seed store, delta publishing and source
+ * versions. With a {@link SourceVersion}, keys are resolved before hashing
+ * and records whose version the store already holds are left out of step 1.
+ * Deletes take their place in the batch: they remove the key with the same
+ * {@code putAll} and are forwarded as tombstones.
+ * <p>
+ * Buffered records are also written to a changelogged pending store, because
+ * Kafka Streams commits the input offsets of records a processor has
+ * received whether or not it has forwarded them. Records that were buffered
+ * when a task was closed or crashed are restored with the store and
+ * processed by the next flush; only their headers are not kept, so their
+ * source version can only come from {@code version.path}.
+ */
+public class BatchingDedupProcessor<V> implements Processor<String, V, String, DedupResult<V>> {
+
+    private final String storeName;
+    private final String pendingStoreName;
+    private final String seedStoreName;
+    private final DocumentFingerprinter fingerprints;
+    private final DedupValueFormat<V> format;
+    private final long retentionMs;
+    private final DedupProperties.Batch batch;
+    private final DedupProperties.Expiry expiry;
+    private final DedupProperties.Filter filterSettings;
+    private final BatchHasher hasher;
+    private final DeltaEncoder delta;
+    private final SourceVersion versions;
+    private final DedupMetrics metrics;
+
+    private ProcessorContext<String, DedupResult<V>> context;
+    private KeyValueStore<String, FingerprintRecord> kvStore;
+    private KeyValueStore<Long, byte[]> pendingStore;
+    private ReadOnlyKeyValueStore<String, ValueAndTimestamp<FingerprintRecord>> seedStore;
+    private KeyBloomFilter keyFilter;
+    private List<Meter> filterMeters = Collections.emptyList();
+    private Serializer<V> valueSerializer;
+    private Deserializer<V> valueDeserializer;
+
+    private final List<Record<String, V>> buffer = new ArrayList<>();
+    private long firstSequence;
+    private long nextSequence;
+
+    /**
+     * @param pendingStoreName changelogged store of the records waiting in the buffer
+     * @param seedStoreName    global fingerprint store read for keys missing
+     *                         from the local store, or null
+     * @param settings         settings of the mapping, with the hashing pool
+     *                         shared by all tasks
+     */
+    public BatchingDedupProcessor(String storeName, String pendingStoreName, String seedStoreName,
+                                  DedupSettings<V> settings) {
+        this.storeName = storeName;
+        this.pendingStoreName = pendingStoreName;
+        this.seedStoreName = seedStoreName;
+        this.fingerprints = settings.fingerprints();
+        this.format = settings.format();
+        this.retentionMs = settings.retention().toMillis();
+        this.batch = settings.batch();
+        this.expiry = settings.expiry();
+        this.filterSettings = settings.filter();
+        this.hasher = settings.hasher();
+        this.delta = settings.delta();
+        this.versions = settings.versions();
+        this.metrics = settings.metrics();
+    }
+
+    @Override
+    public void init(ProcessorContext<String, DedupResult<V>> context) {
+        this.context = context;
+        this.kvStore = context.getStateStore(storeName);
+        this.pendingStore = context.getStateStore(pendingStoreName);
+        if (seedStoreName != null) {
+            this.seedStore = context.getStateStore(seedStoreName);
+        }
+        this.valueSerializer = format.serde().serializer();
+        this.valueDeserializer = format.serde().deserializer();
+        if (filterSettings.isEnabled()) {
+            // init runs once the stores have been restored from their changelogs
+            this.keyFilter = new KeyBloomFilter(filterSettings);
+            keyFilter.rebuild(kvStore.all(), kvStore.approximateNumEntries());
+            this.filterMeters = keyFilter.bindTo(Metrics.globalRegistry,
+                    Tags.of("store", storeName, "task", context.taskId().toString()));
+        }
+        if (retentionMs > 0) {
+            FingerprintStoreSweeper sweeper = new FingerprintStoreSweeper(kvStore, retentionMs, expiry.getMaxEntriesPerSweep());
+            context.schedule(expiry.getInterval(), PunctuationType.WALL_CLOCK_TIME, sweeper::sweep);
+        }
+
+        // Records received before the task last stopped, in offset order
+        try (KeyValueIterator<Long, byte[]> pending = pendingStore.all()) {
+            while (pending.hasNext()) {
+                KeyValue<Long, byte[]> entry = pending.next();
+                if (buffer.isEmpty()) {
+                    firstSequence = entry.key;
+                }
+                buffer.add(decode(entry.value));
+                nextSequence = entry.key + 1;
+            }
+        }
+        firstSequence = buffer.isEmpty() ? nextSequence : firstSequence;
+
+        context.schedule(batch.getLinger(), PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+    }
+
+    @Override
+    public void process(Record<String, V> record) {
+        if (record.key() == null) {
+            return;
+        }
+        pendingStore.put(nextSequence++, encode(record));
+        buffer.add(record);
+        if (buffer.size() >= batch.getMaxRecords()) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long now = context.currentSystemTimeMs();
+        // Latest known record per key: from the store first, then from earlier records of the batch
+        Map<String, FingerprintRecord> latest = new HashMap<>();
+        MemberHashes[] members = delta == null ? null : new MemberHashes[buffer.size()];
+        Fingerprint[] hashes = new Fingerprint[buffer.size()];
+        long[] sourceVersions = versions == null ? null : readVersions(latest, now);
+        List<Integer> indexes = new ArrayList<>(buffer.size());
+        List<V> values = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            FingerprintRecord stored = sourceVersions == null ? null : latest.get(buffer.get(i).key());
+            if (buffer.get(i).value() != null && (stored == null || !stored.supersedes(sourceVersions[i]))) {
+                indexes.add(i);
+                values.add(buffer.get(i).value());
+            }
+        }
+        MemberHashes[] hashedMembers = members == null ? null : new MemberHashes[values.size()];
+        Fingerprint[] hashed = hasher.fingerprint(format, fingerprints, values, hashedMembers, metrics);
+        for (int j = 0; j < hashed.length; j++) {
+            hashes[indexes.get(j)] = hashed[j];
+            if (members != null) {
+                members[indexes.get(j)] = hashedMembers[j];
+            }
+        }
+
+        Map<String, FingerprintRecord> writes = new LinkedHashMap<>();
+        FingerprintRecord[] accepted = new FingerprintRecord[buffer.size()];
+        FingerprintRecord[] previous = new FingerprintRecord[buffer.size()];
+        boolean[] deleted = new boolean[buffer.size()];
+        for (int i = 0; i < buffer.size(); i++) {
+            String key = buffer.get(i).key();
+            FingerprintRecord stored = latest.containsKey(key) ? latest.get(key) : resolve(key, now);
+            long version = sourceVersions == null ? SourceVersion.NONE : sourceVersions[i];
+            if (stored != null && stored.supersedes(version)) {
+                metrics.record(stored.version() == version ? DedupMetrics.Decision.REJECTED_VERSION
+                        : DedupMetrics.Decision.REJECTED_STALE, key, stored);
+                latest.put(key, stored);
+                continue;
+            }
+            if (buffer.get(i).value() == null) {
+                // A null value in putAll deletes the key
+                deleted[i] = true;
+                metrics.record(DedupMetrics.Decision.DELETED, key, null);
+                latest.put(key, null);
+                writes.put(key, null);
+                continue;
+            }
+            if (hashes[i] == null) {
+                // Left out of the batch hash, but an earlier record of the batch replaced the stored version with none
+                MemberHashes.Builder builder = members == null ? null : new MemberHashes.Builder();
+                long hashStart = System.nanoTime();
+                hashes[i] = format.fingerprint(fingerprints, buffer.get(i).value(), builder);
+                metrics.recordHash(hashStart);
+                if (builder != null) {
+                    members[i] = builder.build();
+                }
+            }
+            if (stored != null && stored.fingerprint().equals(hashes[i])) {
+                metrics.record(DedupMetrics.Decision.REJECTED_STORE, key, stored);
+                if (version != SourceVersion.NONE && version != stored.version()) {
+                    stored = stored.withVersion(version); // later replays of this version skip hashing
+                    writes.put(key, stored);
+                }
+                latest.put(key, stored);
+                continue;
+            }
+            accepted[i] = FingerprintRecord.next(stored, hashes[i], members == null ? null : members[i], now)
+                    .withVersion(version);
+            previous[i] = stored;
+            metrics.record(DedupMetrics.Decision.ACCEPTED, key, stored);
+            latest.put(key, accepted[i]);
+            writes.put(key, accepted[i]);
+        }
+
+        if (!writes.isEmpty()) {
+            List<KeyValue<String, FingerprintRecord>> entries = new ArrayList<>(writes.size());
+            for (Map.Entry<String, FingerprintRecord> write : writes.entrySet()) {
+                entries.add(KeyValue.pair(write.getKey(), write.getValue()));
+                if (keyFilter != null && write.getValue() != null) {
+                    keyFilter.put(write.getKey());
+                }
+            }
+            kvStore.putAll(entries);
+        }
+        for (int i = 0; i < buffer.size(); i++) {
+            if (deleted[i]) {
+                context.forward(buffer.get(i).withValue(DedupResult.tombstone()));
+            } else if (accepted[i] != null) {
+                Record<String, V> record = buffer.get(i);
+                context.forward(record.withValue(delta == null
+                        ? new DedupResult<>(record.value(), accepted[i])
+                        : delta.result(format, record.value(), previous[i], accepted[i], metrics)));
+            }
+        }
+
+        for (long sequence = firstSequence; sequence < nextSequence; sequence++) {
+            pendingStore.delete(sequence);
+        }
+        firstSequence = nextSequence;
+        metrics.recordBatch(buffer.size(), start);
+        buffer.clear();
+    }
+
+    /**
+     * Reads the source version of every buffered record and resolves each
+     * distinct key into {@code latest}.
+     */
+    private long[] readVersions(Map<String, FingerprintRecord> latest, long now) {
+        long[] sourceVersions = new long[buffer.size()];
+        for (int i = 0; i < buffer.size(); i++) {
+            Record<String, V> record = buffer.get(i);
+            sourceVersions[i] = versions.read(record.headers(), record.value());
+            if (!latest.containsKey(record.key())) {
+                latest.put(record.key(), resolve(record.key(), now));
+            }
+        }
+        return sourceVersions;
+    }
+
+    /**
+     * The key's record in the local store, or in the seed store, unless it
+     * is outside the retention.
+     */
+    private FingerprintRecord resolve(String key, long now) {
+        FingerprintRecord stored = null;
+        if (keyFilter == null || keyFilter.mightContain(key)) {
+            long lookupStart = System.nanoTime();
+            stored = kvStore.get(key);
+            metrics.recordStoreLookup(lookupStart);
+            if (stored == null && keyFilter != null) {
+                keyFilter.recordFalsePositive();
+            }
+        }
+        if (stored == null && seedStore != null) {
+            // Copied into the local store, as by DedupTransformer, so each key is read from the seed store at most once
+            ValueAndTimestamp<FingerprintRecord> seeded = seedStore.get(key);
+            if (seeded != null) {
+                stored = seeded.value();
+                kvStore.put(key, stored);
+                if (keyFilter != null) {
+                    keyFilter.put(key);
+                }
+            }
+        }
+        return stored != null && stored.isExpired(retentionMs, now) ? null : stored;
+    }
+
+    /**
+     * Pending entry: timestamp, key length, key and serialized value. The key
+     * length of a delete is stored as {@code -length - 1} and no value follows.
+     */
+    private byte[] encode(Record<String, V> record) {
+        byte[] key = record.key().getBytes(StandardCharsets.UTF_8);
+        byte[] value = record.value() == null ? new byte[0] : valueSerializer.serialize(null, record.value());
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES + key.length + value.length)
+                .putLong(record.timestamp())
+                .putInt(record.value() == null ? -key.length - 1 : key.length)
+                .put(key)
+                .put(value)
+                .array();
+    }
+
+    private Record<String, V> decode(byte[] entry) {
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        long timestamp = buffer.getLong();
+        int keyLength = buffer.getInt();
+        byte[] key = new byte[keyLength < 0 ? -keyLength - 1 : keyLength];
+        buffer.get(key);
+        byte[] value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return new Record<>(new String(key, StandardCharsets.UTF_8),
+                keyLength < 0 ? null : valueDeserializer.deserialize(null, value), timestamp);
+    }
+
+    @Override
+    public void close() {
+        filterMeters.forEach(Metrics.globalRegistry::remove);
+    }
+}
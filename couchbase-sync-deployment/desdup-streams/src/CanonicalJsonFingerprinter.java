@@ -0,0 +1,279 @@
+package com.path.stream.app;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CanonicalJsonFingerprinter hashes a JSON document so that member order,
+ * whitespace and ignored (volatile) members do not change the result.
+ * <p>
+ * The document is walked once with Jackson's streaming parser; no tree is
+ * built. Every object member is hashed on its own (name + value) and the
+ * member digests are sorted before being fed into the object's digest, which
+ * makes the fingerprint independent of member order. Array order is kept.
+ * Ignored members are skipped without being read.
+ */
+public final class CanonicalJsonFingerprinter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Type tags keep encodings of different JSON types apart
+    private static final byte OBJECT_START = '{';
+    private static final byte OBJECT_END = '}';
+    private static final byte ARRAY_START = '[';
+    private static final byte ARRAY_END = ']';
+    private static final byte STRING = 's';
+    private static final byte NUMBER = 'n';
+    private static final byte TRUE = 't';
+    private static final byte FALSE = 'f';
+    private static final byte NULL = 'z';
+    // 0xFF never occurs in UTF-8 and terminates names and scalar text
+    private static final byte END_OF_TEXT = (byte) 0xFF;
+
+    private final FingerprintAlgorithm algorithm;
+    private final IgnoredJsonPaths ignoredPaths;
+    private final ThreadLocal<Walker> walkers;
+
+    public CanonicalJsonFingerprinter(FingerprintAlgorithm algorithm, IgnoredJsonPaths ignoredPaths) {
+        this.algorithm = algorithm;
+        this.ignoredPaths = ignoredPaths == null ? IgnoredJsonPaths.NONE : ignoredPaths;
+        this.walkers = ThreadLocal.withInitial(Walker::new);
+    }
+
+    /**
+     * @throws IOException if the input is not a single well-formed JSON value
+     */
+    public Fingerprint fingerprint(byte[] json) throws IOException {
+        return fingerprint(json, null);
+    }
+
+    /**
+     * Also collects the hashes of the document's top-level members.
+     *
+     * @param members receives the members, or null
+     * @throws IOException if the input is not a single well-formed JSON value
+     */
+    public Fingerprint fingerprint(byte[] json, MemberHashes.Builder members) throws IOException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            return walkers.get().fingerprint(parser, members);
+        }
+    }
+
+    /**
+     * @throws IOException if the input is not a single well-formed JSON value
+     */
+    public Fingerprint fingerprint(String json) throws IOException {
+        return fingerprint(json, null);
+    }
+
+    /**
+     * @param members receives the top-level members, or null
+     * @throws IOException if the input is not a single well-formed JSON value
+     */
+    public Fingerprint fingerprint(String json, MemberHashes.Builder members) throws IOException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            return walkers.get().fingerprint(parser, members);
+        }
+    }
+
+    /**
+     * Per-thread walk state: one frame per nesting level so that nested
+     * objects never share a hasher or a digest buffer with their parent.
+     */
+    private final class Walker {
+
+        private final FingerprintHasher root = algorithm.newHasher();
+        private final List<Frame> frames = new ArrayList<>();
+        private final List<IgnoredJsonPaths.Node> rootNodes = new ArrayList<>();
+        // Receives the members of the root object; cleared once that object is entered
+        private MemberHashes.Builder members;
+
+        Walker() {
+            if (!ignoredPaths.isEmpty()) {
+                rootNodes.add(ignoredPaths.root());
+            }
+        }
+
+        Fingerprint fingerprint(JsonParser parser, MemberHashes.Builder members) throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new IOException("Empty JSON document");
+            }
+            root.reset();
+            this.members = token == JsonToken.START_OBJECT ? members : null;
+            if (this.members != null) {
+                this.members.object();
+            }
+            writeValue(parser, token, root, 0, rootNodes);
+            if (parser.nextToken() != null) {
+                throw new IOException("Trailing content after JSON document");
+            }
+            return root.finish();
+        }
+
+        private void writeValue(JsonParser parser, JsonToken token, FingerprintHasher out,
+                                int depth, List<IgnoredJsonPaths.Node> nodes) throws IOException {
+            switch (token) {
+                case START_OBJECT:
+                    writeObject(parser, out, depth, nodes);
+                    break;
+                case START_ARRAY:
+                    out.update(ARRAY_START);
+                    JsonToken element;
+                    while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        writeValue(parser, element, out, depth, nodes);
+                    }
+                    out.update(ARRAY_END);
+                    break;
+                case VALUE_STRING:
+                    writeText(parser, STRING, out);
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    writeText(parser, NUMBER, out);
+                    break;
+                case VALUE_TRUE:
+                    out.update(TRUE);
+                    break;
+                case VALUE_FALSE:
+                    out.update(FALSE);
+                    break;
+                case VALUE_NULL:
+                    out.update(NULL);
+                    break;
+                default:
+                    throw new IOException("Unexpected JSON token " + token);
+            }
+        }
+
+        private void writeObject(JsonParser parser, FingerprintHasher out,
+                                 int depth, List<IgnoredJsonPaths.Node> nodes) throws IOException {
+            Frame frame = frame(depth);
+            frame.count = 0;
+            MemberHashes.Builder members = this.members;
+            this.members = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                List<IgnoredJsonPaths.Node> childNodes = frame.childNodes;
+                if (!nodes.isEmpty() && IgnoredJsonPaths.descend(nodes, name, childNodes)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (nodes.isEmpty()) {
+                    childNodes.clear();
+                }
+
+                FingerprintHasher member = frame.hasher.reset();
+                member.update(name);
+                member.update(END_OF_TEXT);
+                writeValue(parser, value, member, depth + 1, childNodes);
+                member.finish(frame.slot(), frame.count * frame.width);
+                if (members != null) {
+                    members.add(MemberHashes.nameHash(name), frame.prefix(frame.count));
+                }
+                frame.count++;
+            }
+
+            // Sorting member digests makes the result independent of member order
+            frame.sort();
+            out.update(OBJECT_START);
+            for (int i = 0; i < frame.count; i++) {
+                out.update(frame.digests, frame.order[i] * frame.width, frame.width);
+            }
+            out.update(OBJECT_END);
+        }
+
+        private void writeText(JsonParser parser, byte tag, FingerprintHasher out) throws IOException {
+            out.update(tag);
+            out.update(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            out.update(END_OF_TEXT);
+        }
+
+        private Frame frame(int depth) {
+            while (frames.size() <= depth) {
+                frames.add(new Frame(algorithm));
+            }
+            return frames.get(depth);
+        }
+    }
+
+    /**
+     * Member digests of the object currently being walked at one nesting level.
+     */
+    private static final class Frame {
+
+        final FingerprintHasher hasher;
+        final int width;
+        final List<IgnoredJsonPaths.Node> childNodes = new ArrayList<>();
+        byte[] digests;
+        int[] order = new int[16];
+        int count;
+
+        Frame(FingerprintAlgorithm algorithm) {
+            this.hasher = algorithm.newHasher();
+            this.width = algorithm.length();
+            this.digests = new byte[16 * width];
+        }
+
+        /**
+         * Returns the digest buffer, grown to hold one more member.
+         */
+        byte[] slot() {
+            if ((count + 1) * width > digests.length) {
+                byte[] grown = new byte[digests.length * 2];
+                System.arraycopy(digests, 0, grown, 0, count * width);
+                digests = grown;
+            }
+            return digests;
+        }
+
+        /**
+         * First 8 bytes of a member digest as a big-endian long.
+         */
+        long prefix(int member) {
+            long value = 0;
+            for (int i = member * width; i < member * width + 8; i++) {
+                value = (value << 8) | (digests[i] & 0xFFL);
+            }
+            return value;
+        }
+
+        void sort() {
+            if (order.length < count) {
+                order = new int[Math.max(count, order.length * 2)];
+            }
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            // Insertion sort: objects rarely have more than a few dozen members
+            for (int i = 1; i < count; i++) {
+                int current = order[i];
+                int j = i - 1;
+                while (j >= 0 && compare(order[j], current) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = current;
+            }
+        }
+
+        private int compare(int a, int b) {
+            int offsetA = a * width;
+            int offsetB = b * width;
+            for (int i = 0; i < width; i++) {
+                int diff = (digests[offsetA + i] & 0xFF) - (digests[offsetB + i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.path.stream.app;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks that every input topic has the same number of partitions as its
+ * output topic before the partitioned dedup mode starts.
+ * <p>
+ * In partitioned mode the dedup state of a key lives in the store of the task
+ * that owns the key's input partition. With equal partition counts the default
+ * partitioner places the key on the same partition number of the output topic,
+ * which keeps per-key ordering intact downstream and lets a store be rebuilt
+ * from the matching output/fingerprint partition.
+ */
+public class CoPartitioningValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(CoPartitioningValidator.class);
+
+    private final Map<String, Object> adminConfig;
+
+    public CoPartitioningValidator(Map<String, Object> adminConfig) {
+        this.adminConfig = adminConfig;
+    }
+
+    /**
+     * @return one message per mapping whose topics are not co-partitioned;
+     * topics that do not exist yet are reported in the log but not returned
+     */
+    public List<String> validate(DedupTopicMapper mapper) {
+        Set<String> topics = new LinkedHashSet<>();
+        for (String inputTopic : mapper.getAllInputTopics()) {
+            topics.add(inputTopic);
+            topics.add(mapper.getMapping(inputTopic).outputTopic);
+        }
+
+        List<String> problems = new ArrayList<>();
+        try (AdminClient admin = AdminClient.create(adminConfig)) {
+            Map<String, KafkaFuture<TopicDescription>> descriptions =
+                    admin.describeTopics(topics).topicNameValues();
+
+            for (String inputTopic : mapper.getAllInputTopics()) {
+                String outputTopic = mapper.getMapping(inputTopic).outputTopic;
+                Integer inputPartitions = partitions(descriptions, inputTopic);
+                Integer outputPartitions = partitions(descriptions, outputTopic);
+                if (inputPartitions == null || outputPartitions == null) {
+                    continue;
+                }
+                if (!inputPartitions.equals(outputPartitions)) {
+                    problems.add(String.format("input=%s has %d partitions but output=%s has %d",
+                            inputTopic, inputPartitions, outputTopic, outputPartitions));
+                }
+            }
+        }
+        return problems;
+    }
+
+    private static Integer partitions(Map<String, KafkaFuture<TopicDescription>> descriptions, String topic) {
+        try {
+            return descriptions.get(topic).get(30, TimeUnit.SECONDS).partitions().size();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Skipping co-partitioning check for topic '{}': {}", topic, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
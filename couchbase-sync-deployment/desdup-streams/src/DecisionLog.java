@@ -0,0 +1,55 @@
+package com.path.stream.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampled, rate-limited log of dedup decisions for debugging
+ * ({@code dedup.decision-log.*}). Disabled by default; when enabled, a
+ * {@code sample-rate} share of decisions is considered and at most
+ * {@code max-per-second} of those are written, at INFO, to the
+ * {@code com.path.stream.app.decisions} logger.
+ */
+public final class DecisionLog {
+
+    public static final DecisionLog DISABLED = new DecisionLog(false, 0, 0);
+
+    private static final Logger log = LoggerFactory.getLogger("com.path.stream.app.decisions");
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int maxPerSecond;
+
+    private final AtomicLong currentSecond = new AtomicLong();
+    private final AtomicInteger writtenThisSecond = new AtomicInteger();
+
+    public DecisionLog(boolean enabled, double sampleRate, int maxPerSecond) {
+        this.enabled = enabled && sampleRate > 0 && maxPerSecond > 0;
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    public static DecisionLog of(DedupProperties.DecisionLog settings) {
+        return new DecisionLog(settings.isEnabled(), settings.getSampleRate(), settings.getMaxPerSecond());
+    }
+
+    void offer(String topic, DedupMetrics.Decision decision, String key, FingerprintRecord stored) {
+        if (!enabled || ThreadLocalRandom.current().nextDouble() >= sampleRate || !acquire()) {
+            return;
+        }
+        log.info("topic={} key={} decision={} stored={}", topic, key, decision.tag(), stored);
+    }
+
+    private boolean acquire() {
+        long second = System.currentTimeMillis() / 1000;
+        long current = currentSecond.get();
+        if (current != second && currentSecond.compareAndSet(current, second)) {
+            writtenThisSecond.set(0);
+        }
+        return writtenThisSecond.incrementAndGet() <= maxPerSecond;
+    }
+}
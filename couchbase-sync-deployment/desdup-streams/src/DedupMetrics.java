@@ -0,0 +1,166 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per input topic dedup meters, shared by all tasks of that topic.
+ * <p>
+ * Every record ends in exactly one {@link Decision}, counted as
+ * {@code dedup.records{topic,decision}}. Fingerprinting and store reads are
+ * timed as {@code dedup.hash} and {@code dedup.store.lookup}; reads skipped by
+ * the key filter are not timed. Batches of the batching processor are
+ * measured as {@code dedup.batch.size} and {@code dedup.batch.flush}, and
+ * accepted records of delta mappings are counted by what was published as
+ * {@code dedup.delta{topic,outcome=patch|full}}. Coalescing mappings count
+ * updates that entered the buffer, were replaced in it and were emitted from
+ * it as {@code dedup.coalesce{topic,outcome}}. Decisions are also offered to the optional
+ * {@link DecisionLog}, which replaces the former per-record INFO logging.
+ */
+public final class DedupMetrics {
+
+    /**
+     * What happened to a record.
+     */
+    public enum Decision {
+        ACCEPTED("accepted"),
+        REJECTED_CACHE("rejected.cache"),
+        REJECTED_OVERLAY("rejected.overlay"),
+        REJECTED_STORE("rejected.store"),
+        // The stored source version equals the record's, decided without hashing
+        REJECTED_VERSION("rejected.version"),
+        // The stored source version is newer: an out-of-order replay
+        REJECTED_STALE("rejected.stale"),
+        // A delete, published as tombstones after the key was removed from the store
+        DELETED("deleted");
+
+        private final String tag;
+
+        Decision(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /**
+     * What the {@link UpdateCoalescer} did with an update.
+     */
+    public enum Coalesce {
+        // First update of a key, buffered
+        BUFFERED("buffered"),
+        // Replaced in the buffer by a later update, never published
+        COALESCED("coalesced"),
+        // Emitted to deduplication at its deadline
+        EMITTED("emitted");
+
+        private final String tag;
+
+        Coalesce(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private final String topic;
+    private final Counter[] decisions = new Counter[Decision.values().length];
+    private final Timer hash;
+    private final Timer storeLookup;
+    private final DistributionSummary batchSize;
+    private final Timer batchFlush;
+    private final Counter deltaPatch;
+    private final Counter deltaFull;
+    private final Counter[] coalesce = new Counter[Coalesce.values().length];
+    private final DecisionLog decisionLog;
+
+    private DedupMetrics(MeterRegistry registry, String topic, DecisionLog decisionLog) {
+        this.topic = topic;
+        Tags tags = Tags.of("topic", topic);
+        for (Decision decision : Decision.values()) {
+            decisions[decision.ordinal()] = Counter.builder("dedup.records")
+                    .tags(tags).tag("decision", decision.tag())
+                    .description("Records by dedup decision")
+                    .register(registry);
+        }
+        this.hash = Timer.builder("dedup.hash")
+                .tags(tags)
+                .description("Time to fingerprint one record value")
+                .register(registry);
+        this.storeLookup = Timer.builder("dedup.store.lookup")
+                .tags(tags)
+                .description("Time to read one key from the fingerprint store")
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("dedup.batch.size")
+                .tags(tags)
+                .description("Records per batch of the batching processor")
+                .register(registry);
+        this.batchFlush = Timer.builder("dedup.batch.flush")
+                .tags(tags)
+                .description("Time to hash, resolve, store and forward one batch")
+                .register(registry);
+        this.deltaPatch = Counter.builder("dedup.delta")
+                .tags(tags).tag("outcome", "patch")
+                .description("Accepted records of delta mappings by what was published")
+                .register(registry);
+        this.deltaFull = Counter.builder("dedup.delta")
+                .tags(tags).tag("outcome", "full")
+                .description("Accepted records of delta mappings by what was published")
+                .register(registry);
+        for (Coalesce outcome : Coalesce.values()) {
+            coalesce[outcome.ordinal()] = Counter.builder("dedup.coalesce")
+                    .tags(tags).tag("outcome", outcome.tag())
+                    .description("Updates of coalescing mappings by what happened to them in the buffer")
+                    .register(registry);
+        }
+        this.decisionLog = decisionLog;
+    }
+
+    public static DedupMetrics forTopic(MeterRegistry registry, String topic, DecisionLog decisionLog) {
+        return new DedupMetrics(registry, topic, decisionLog);
+    }
+
+    /**
+     * Meters that are not exported anywhere, for transformers used outside
+     * the application (tests, benchmarks).
+     */
+    public static DedupMetrics noop() {
+        return new DedupMetrics(new CompositeMeterRegistry(), "none", DecisionLog.DISABLED);
+    }
+
+    public void record(Decision decision, String key, FingerprintRecord stored) {
+        decisions[decision.ordinal()].increment();
+        decisionLog.offer(topic, decision, key, stored);
+    }
+
+    public void recordHash(long startNanos) {
+        hash.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStoreLookup(long startNanos) {
+        storeLookup.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDelta(boolean patch) {
+        (patch ? deltaPatch : deltaFull).increment();
+    }
+
+    public void recordCoalesce(Coalesce outcome) {
+        coalesce[outcome.ordinal()].increment();
+    }
+
+    public void recordBatch(int records, long startNanos) {
+        batchSize.record(records);
+        batchFlush.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,712 @@
+package com.path.stream.app;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Application settings bound from the {@code dedup.*} namespace
+ * (application.properties / environment variables).
+ */
+@ConfigurationProperties(prefix = "dedup")
+public class DedupProperties {
+
+    /**
+     * Where the dedup state of a key is kept.
+     */
+    public enum Mode {
+        // Every instance holds all fingerprints in GlobalKTables (one per fingerprint topic)
+        GLOBAL,
+        // Each task holds the fingerprints of its own input partition in a changelogged store
+        PARTITIONED
+    }
+
+    /**
+     * Implementation of the fingerprint, global and coalescing stores.
+     */
+    public enum StoreType {
+        // Persistent RocksDB stores; restarts resume from the local state directory
+        ROCKSDB,
+        // Heap-only stores, restored in full from their changelog or fingerprint topic on every start
+        IN_MEMORY
+    }
+
+    private Mode mode = Mode.GLOBAL;
+
+    private StoreType storeType = StoreType.ROCKSDB;
+
+    // Hash used to fingerprint document content, e.g. dedup.fingerprint-algorithm=murmur3_128
+    private FingerprintAlgorithm fingerprintAlgorithm = FingerprintAlgorithm.SHA_256;
+
+    // Record value handling: bytes (pass-through, default) or string
+    private DedupValueFormat.Name valueFormat = DedupValueFormat.Name.BYTES;
+
+    private final Processing processing = new Processing();
+
+    private final Partitioned partitioned = new Partitioned();
+
+    private final Batch batch = new Batch();
+
+    private final Coalesce coalesce = new Coalesce();
+
+    private final Consolidated consolidated = new Consolidated();
+
+    private final Expiry expiry = new Expiry();
+
+    private final Cache cache = new Cache();
+
+    private final Filter filter = new Filter();
+
+    private final Overlay overlay = new Overlay();
+
+    private final DecisionLog decisionLog = new DecisionLog();
+
+    private final Warmup warmup = new Warmup();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    public void setStoreType(StoreType storeType) {
+        this.storeType = storeType;
+    }
+
+    public FingerprintAlgorithm getFingerprintAlgorithm() {
+        return fingerprintAlgorithm;
+    }
+
+    public void setFingerprintAlgorithm(FingerprintAlgorithm fingerprintAlgorithm) {
+        this.fingerprintAlgorithm = fingerprintAlgorithm;
+    }
+
+    public DedupValueFormat.Name getValueFormat() {
+        return valueFormat;
+    }
+
+    public void setValueFormat(DedupValueFormat.Name valueFormat) {
+        this.valueFormat = valueFormat;
+    }
+
+    public Processing getProcessing() {
+        return processing;
+    }
+
+    public Partitioned getPartitioned() {
+        return partitioned;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Coalesce getCoalesce() {
+        return coalesce;
+    }
+
+    public Consolidated getConsolidated() {
+        return consolidated;
+    }
+
+    public Expiry getExpiry() {
+        return expiry;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public Overlay getOverlay() {
+        return overlay;
+    }
+
+    public DecisionLog getDecisionLog() {
+        return decisionLog;
+    }
+
+    public Warmup getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * Processing guarantee and commit tuning ({@code dedup.processing.*}).
+     * <p>
+     * With {@code exactly_once_v2} the store updates, their changelog, the
+     * output and fingerprint records and the input offsets of a task are
+     * committed in one transaction, so a crash can neither re-emit an
+     * accepted record nor lose a store update. The profile sets the commit
+     * interval, the record cache in front of the partitioned stores and
+     * producer batching; explicit settings override the profile.
+     */
+    public static class Processing {
+
+        public enum Guarantee {
+            AT_LEAST_ONCE("at_least_once"),
+            EXACTLY_ONCE_V2("exactly_once_v2");
+
+            private final String config;
+
+            Guarantee(String config) {
+                this.config = config;
+            }
+
+            // Value of processing.guarantee
+            public String config() {
+                return config;
+            }
+        }
+
+        public enum Profile {
+            // Short transactions, every store write goes straight to the changelog
+            LOW_LATENCY(Duration.ofMillis(100), DataSize.ofBytes(0), 0, DataSize.ofKilobytes(16)),
+            // Longer transactions, store writes per key collapsed by the record cache, larger producer batches
+            HIGH_THROUGHPUT(Duration.ofSeconds(1), DataSize.ofMegabytes(32), 20, DataSize.ofKilobytes(256));
+
+            private final Duration commitInterval;
+            private final DataSize cacheMaxSize;
+            private final long lingerMs;
+            private final DataSize batchSize;
+
+            Profile(Duration commitInterval, DataSize cacheMaxSize, long lingerMs, DataSize batchSize) {
+                this.commitInterval = commitInterval;
+                this.cacheMaxSize = cacheMaxSize;
+                this.lingerMs = lingerMs;
+                this.batchSize = batchSize;
+            }
+        }
+
+        private Guarantee guarantee = Guarantee.AT_LEAST_ONCE;
+
+        private Profile profile = Profile.LOW_LATENCY;
+
+        // Overrides of the profile; null keeps the profile's value
+        private Duration commitInterval;
+
+        private DataSize cacheMaxSize;
+
+        public Guarantee getGuarantee() {
+            return guarantee;
+        }
+
+        public void setGuarantee(Guarantee guarantee) {
+            this.guarantee = guarantee;
+        }
+
+        public Profile getProfile() {
+            return profile;
+        }
+
+        public void setProfile(Profile profile) {
+            this.profile = profile;
+        }
+
+        public Duration getCommitInterval() {
+            return commitInterval != null ? commitInterval : profile.commitInterval;
+        }
+
+        public void setCommitInterval(Duration commitInterval) {
+            this.commitInterval = commitInterval;
+        }
+
+        // Total for the instance, shared by its stream threads
+        public DataSize getCacheMaxSize() {
+            return cacheMaxSize != null ? cacheMaxSize : profile.cacheMaxSize;
+        }
+
+        public void setCacheMaxSize(DataSize cacheMaxSize) {
+            this.cacheMaxSize = cacheMaxSize;
+        }
+
+        public long getLingerMs() {
+            return profile.lingerMs;
+        }
+
+        public DataSize getBatchSize() {
+            return profile.batchSize;
+        }
+    }
+
+    /**
+     * Settings of the partitioned mode ({@code dedup.partitioned.*}).
+     */
+    public static class Partitioned {
+
+        // Refuse to start when an input topic and its output topic differ in partition count
+        private boolean validateCoPartitioning = true;
+
+        // Fall back to the global fingerprint table for keys missing locally (migration from global mode)
+        private boolean seedFromGlobal = false;
+
+        public boolean isValidateCoPartitioning() {
+            return validateCoPartitioning;
+        }
+
+        public void setValidateCoPartitioning(boolean validateCoPartitioning) {
+            this.validateCoPartitioning = validateCoPartitioning;
+        }
+
+        public boolean isSeedFromGlobal() {
+            return seedFromGlobal;
+        }
+
+        public void setSeedFromGlobal(boolean seedFromGlobal) {
+            this.seedFromGlobal = seedFromGlobal;
+        }
+    }
+
+    /**
+     * Micro-batching of the partitioned mode ({@code dedup.batch.*}), see
+     * {@link BatchingDedupProcessor}. Records are collected per task until
+     * {@code max-records} are buffered or {@code linger} has passed, then
+     * hashed (in parallel with {@code hash-threads} above 0) and resolved
+     * against the store together.
+     */
+    public static class Batch {
+
+        private boolean enabled = false;
+
+        private int maxRecords = 500;
+
+        // Longest time a record waits for its batch to fill up
+        private Duration linger = Duration.ofMillis(20);
+
+        // Threads shared by all tasks for hashing batches; 0 hashes on the stream thread
+        private int hashThreads = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxRecords() {
+            return maxRecords;
+        }
+
+        public void setMaxRecords(int maxRecords) {
+            this.maxRecords = maxRecords;
+        }
+
+        public Duration getLinger() {
+            return linger;
+        }
+
+        public void setLinger(Duration linger) {
+            this.linger = linger;
+        }
+
+        public int getHashThreads() {
+            return hashThreads;
+        }
+
+        public void setHashThreads(int hashThreads) {
+            this.hashThreads = hashThreads;
+        }
+    }
+
+    /**
+     * Coalescing of frequently updated keys ({@code dedup.coalesce.*}), see
+     * {@link UpdateCoalescer}. {@code mode}, {@code window}, {@code max-delay}
+     * and {@code hot-rate} are defaults that mappings may override with their
+     * {@code coalesce*} options; the remaining settings apply to every task.
+     */
+    public static class Coalesce {
+
+        private UpdateCoalescer.Mode mode = UpdateCoalescer.Mode.NONE;
+
+        // A buffered key is emitted once it has not been updated for this long
+        private Duration window = Duration.ofSeconds(1);
+
+        // ... and at the latest this long after its first buffered update
+        private Duration maxDelay = Duration.ofSeconds(10);
+
+        // Updates per second above which mode=hot buffers a key
+        private int hotRate = 10;
+
+        // Per task; beyond this the keys closest to their deadline are emitted early
+        private int maxBufferedKeys = 10_000;
+
+        // How often buffered keys are checked against their deadline
+        private Duration interval = Duration.ofMillis(100);
+
+        public UpdateCoalescer.Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(UpdateCoalescer.Mode mode) {
+            this.mode = mode;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public int getHotRate() {
+            return hotRate;
+        }
+
+        public void setHotRate(int hotRate) {
+            this.hotRate = hotRate;
+        }
+
+        public int getMaxBufferedKeys() {
+            return maxBufferedKeys;
+        }
+
+        public void setMaxBufferedKeys(int maxBufferedKeys) {
+            this.maxBufferedKeys = maxBufferedKeys;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+    }
+
+    /**
+     * One sub-topology for all mappings ({@code dedup.consolidated.*}), see
+     * {@link TopicRoutes}. Requires the partitioned mode: all input topics
+     * are read by one source and share one store whose keys are prefixed
+     * with the input topic.
+     */
+    public static class Consolidated {
+
+        private boolean enabled = false;
+
+        // Additional input topics to subscribe to, e.g. cb\..*; mapped file entries always match
+        private String inputPattern;
+
+        // Output topic of pattern-matched inputs; may refer to pattern groups, e.g. dedup.$0
+        private String outputTopic;
+
+        private String storeName = "dedup-consolidated";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getInputPattern() {
+            return inputPattern;
+        }
+
+        public void setInputPattern(String inputPattern) {
+            this.inputPattern = inputPattern;
+        }
+
+        public String getOutputTopic() {
+            return outputTopic;
+        }
+
+        public void setOutputTopic(String outputTopic) {
+            this.outputTopic = outputTopic;
+        }
+
+        public String getStoreName() {
+            return storeName;
+        }
+
+        public void setStoreName(String storeName) {
+            this.storeName = storeName;
+        }
+    }
+
+    /**
+     * Background removal of fingerprints older than the per-topic retention
+     * ({@code dedup.expiry.*}). Each sweep scans at most
+     * {@code max-entries-per-sweep} store entries and resumes where the
+     * previous one stopped, so a sweep never stalls record processing for long.
+     */
+    public static class Expiry {
+
+        private Duration interval = Duration.ofSeconds(30);
+
+        private int maxEntriesPerSweep = 10_000;
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public int getMaxEntriesPerSweep() {
+            return maxEntriesPerSweep;
+        }
+
+        public void setMaxEntriesPerSweep(int maxEntriesPerSweep) {
+            this.maxEntriesPerSweep = maxEntriesPerSweep;
+        }
+    }
+
+    /**
+     * Defaults for the local fingerprint cache of the global mode
+     * ({@code dedup.cache.*}); mappings may override both per topic.
+     */
+    public static class Cache {
+
+        // How long an accepted fingerprint short-circuits the global store lookup
+        private Duration ttl = Duration.ofSeconds(10);
+
+        // Memory budget per stream task
+        private DataSize maxSize = DataSize.ofMegabytes(16);
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Bloom filter in front of the fingerprint store lookups
+     * ({@code dedup.filter.*}), see {@link KeyBloomFilter}. In partitioned
+     * mode every task has its own filter, in global mode each fingerprint
+     * table has one shared by all stream threads.
+     */
+    public static class Filter {
+
+        private boolean enabled = true;
+
+        // Sizing floor; rebuilds grow the filter to twice the store's entry count
+        private long expectedKeys = 1_000_000;
+
+        private double falsePositiveRate = 0.01;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getExpectedKeys() {
+            return expectedKeys;
+        }
+
+        public void setExpectedKeys(long expectedKeys) {
+            this.expectedKeys = expectedKeys;
+        }
+
+        public double getFalsePositiveRate() {
+            return falsePositiveRate;
+        }
+
+        public void setFalsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+        }
+    }
+
+    /**
+     * Global mode: fingerprints emitted but not yet applied to the global
+     * store ({@code dedup.overlay.*}), see {@link InFlightOverlay}. One
+     * overlay per fingerprint table, shared by all stream threads.
+     */
+    public static class Overlay {
+
+        private boolean enabled = true;
+
+        // Hard bound on the number of entries (roughly 150 bytes each)
+        private int maxEntries = 100_000;
+
+        // Entries the global store has not caught up with by then are ignored
+        private Duration maxAge = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getMaxAge() {
+            return maxAge;
+        }
+
+        public void setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+        }
+    }
+
+    /**
+     * Sampled logging of individual dedup decisions ({@code dedup.decision-log.*}),
+     * see {@link com.path.stream.app.DecisionLog}. Counts and latencies are
+     * always available as metrics; this is for looking at concrete keys.
+     */
+    public static class DecisionLog {
+
+        private boolean enabled = false;
+
+        // Share of decisions considered for logging
+        private double sampleRate = 0.01;
+
+        // Hard cap on written lines, across all topics and threads
+        private int maxPerSecond = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getMaxPerSecond() {
+            return maxPerSecond;
+        }
+
+        public void setMaxPerSecond(int maxPerSecond) {
+            this.maxPerSecond = maxPerSecond;
+        }
+    }
+
+    /**
+     * Restarts and failover ({@code dedup.warmup.*}), see
+     * {@link DedupRestoreMonitor}. Standby replicas keep a restored copy of
+     * the partitioned stores on other instances, a persistent state directory
+     * lets a restarted instance resume from its local stores, and the
+     * readiness probe reports ready only once the stores are restored.
+     */
+    public static class Warmup {
+
+        // Copies of each partitioned store kept warm on other instances; unset: 1 in PARTITIONED mode, 0 otherwise
+        private Integer standbyReplicas;
+
+        // Kafka Streams state directory; must be a persistent volume for fast restarts
+        private String stateDir;
+
+        // Report the application as not ready while stores are being restored
+        private boolean readinessGate = true;
+
+        // A restore taking longer no longer holds readiness back and is reported as degraded
+        private Duration maxRestoreTime = Duration.ofMinutes(5);
+
+        // Global mode: fill the local fingerprint cache from the most recent fingerprints at startup
+        private boolean prewarmCache = true;
+
+        // Most recent fingerprints remembered per fingerprint table for pre-warming
+        private int prewarmMaxEntries = 100_000;
+
+        public Integer getStandbyReplicas() {
+            return standbyReplicas;
+        }
+
+        public void setStandbyReplicas(Integer standbyReplicas) {
+            this.standbyReplicas = standbyReplicas;
+        }
+
+        /**
+         * Standby replicas for the given mode. Unless set explicitly, only the
+         * partitioned mode gets one: in global mode a standby would only copy
+         * the coalescing stores, and every instance already holds the global
+         * fingerprint stores.
+         */
+        public int standbyReplicas(Mode mode) {
+            if (standbyReplicas != null) {
+                return standbyReplicas;
+            }
+            return mode == Mode.PARTITIONED ? 1 : 0;
+        }
+
+        public String getStateDir() {
+            return stateDir;
+        }
+
+        public void setStateDir(String stateDir) {
+            this.stateDir = stateDir;
+        }
+
+        public boolean isReadinessGate() {
+            return readinessGate;
+        }
+
+        public void setReadinessGate(boolean readinessGate) {
+            this.readinessGate = readinessGate;
+        }
+
+        public Duration getMaxRestoreTime() {
+            return maxRestoreTime;
+        }
+
+        public void setMaxRestoreTime(Duration maxRestoreTime) {
+            this.maxRestoreTime = maxRestoreTime;
+        }
+
+        public boolean isPrewarmCache() {
+            return prewarmCache;
+        }
+
+        public void setPrewarmCache(boolean prewarmCache) {
+            this.prewarmCache = prewarmCache;
+        }
+
+        public int getPrewarmMaxEntries() {
+            return prewarmMaxEntries;
+        }
+
+        public void setPrewarmMaxEntries(int prewarmMaxEntries) {
+            this.prewarmMaxEntries = prewarmMaxEntries;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.processor.StateRestoreListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the restoration of the dedup stores from their changelogs and
+ * fingerprint topics, and gates the application's readiness on it.
+ * <p>
+ * Kafka Streams processes no task before its stores are restored and starts
+ * no stream thread before the global stores are, so a restore shows up as
+ * lag rather than as duplicates. A rolling deploy should therefore wait for
+ * it: with {@code dedup.warmup.readiness-gate} the application refuses
+ * traffic until Kafka Streams is running with nothing left to restore, and
+ * again during any later restore. A restore that takes longer than
+ * {@code dedup.warmup.max-restore-time} no longer holds readiness back; it is
+ * marked as degraded ({@code dedup.restore.degraded}) until it completes.
+ * <p>
+ * Per store, restored records, remaining records, the restore rate and the
+ * restore time of each partition are published as {@code dedup.restore.*}.
+ * Callbacks arrive from the stream, restore and global threads.
+ */
+public class DedupRestoreMonitor implements StateRestoreListener, KafkaStreams.StateListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DedupRestoreMonitor.class);
+
+    private final ApplicationEventPublisher publisher;
+    private final MeterRegistry registry;
+    private final DedupProperties.Warmup settings;
+    private final Map<String, StoreRestore> stores = new ConcurrentHashMap<>();
+
+    private volatile KafkaStreams.State state = KafkaStreams.State.CREATED;
+    private boolean started;
+    private long restoringSince = -1;
+    private volatile boolean degraded;
+    private boolean ready;
+
+    public DedupRestoreMonitor(ApplicationEventPublisher publisher, MeterRegistry registry, DedupProperties.Warmup settings) {
+        this.publisher = publisher;
+        this.registry = registry;
+        this.settings = settings;
+        Gauge.builder("dedup.restore.degraded", this, monitor -> monitor.degraded ? 1 : 0)
+                .description("1 while a restore has exceeded dedup.warmup.max-restore-time")
+                .register(registry);
+    }
+
+    @Override
+    public void onRestoreStart(TopicPartition partition, String storeName, long startingOffset, long endingOffset) {
+        store(storeName).start(partition, endingOffset - startingOffset);
+        log.info("Restoring store '{}' from {}: {} records", storeName, partition, endingOffset - startingOffset);
+        update();
+    }
+
+    @Override
+    public void onBatchRestored(TopicPartition partition, String storeName, long batchEndOffset, long numRestored) {
+        store(storeName).restored(partition, numRestored);
+        update();
+    }
+
+    @Override
+    public void onRestoreEnd(TopicPartition partition, String storeName, long totalRestored) {
+        long millis = store(storeName).end(partition);
+        log.info("Restored store '{}' from {}: {} records in {} ms", storeName, partition, totalRestored, millis);
+        update();
+    }
+
+    @Override
+    public void onChange(KafkaStreams.State newState, KafkaStreams.State oldState) {
+        this.state = newState;
+        update();
+    }
+
+    /**
+     * Spring Boot reports the application ready once the context has
+     * started, which may be in the middle of a restore.
+     */
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getSource() != this && event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            synchronized (this) {
+                if (settings.isReadinessGate() && !ready) {
+                    AvailabilityChangeEvent.publish(publisher, this, ReadinessState.REFUSING_TRAFFIC);
+                }
+            }
+        }
+    }
+
+    public boolean isRestoring() {
+        return stores.values().stream().anyMatch(StoreRestore::isRestoring);
+    }
+
+    private synchronized void update() {
+        long now = System.nanoTime();
+        boolean restoring = isRestoring();
+        if (!restoring) {
+            restoringSince = -1;
+            if (degraded) {
+                log.info("Restore completed, no longer degraded");
+            }
+            degraded = false;
+        } else if (restoringSince < 0) {
+            restoringSince = now;
+        } else if (!degraded && now - restoringSince > settings.getMaxRestoreTime().toNanos()) {
+            degraded = true;
+            log.warn("Restore still running after {}, reporting ready with degraded state", settings.getMaxRestoreTime());
+        }
+
+        KafkaStreams.State current = state;
+        started |= current == KafkaStreams.State.RUNNING;
+        boolean nowReady = started && current.isRunningOrRebalancing() && (!restoring || degraded);
+        if (settings.isReadinessGate() && nowReady != ready) {
+            AvailabilityChangeEvent.publish(publisher, this,
+                    nowReady ? ReadinessState.ACCEPTING_TRAFFIC : ReadinessState.REFUSING_TRAFFIC);
+        }
+        ready = nowReady;
+    }
+
+    private StoreRestore store(String storeName) {
+        return stores.computeIfAbsent(storeName, name -> new StoreRestore(name, registry));
+    }
+
+    /**
+     * Restore progress of one store over all of its partitions.
+     */
+    private static final class StoreRestore {
+
+        private final Map<TopicPartition, long[]> partitions = new ConcurrentHashMap<>(); // remaining, start nanos
+        private final LongAdder restored = new LongAdder();
+        private final Timer duration;
+        private volatile long restoreStart;
+        private volatile long restoredAtStart;
+
+        StoreRestore(String storeName, MeterRegistry registry) {
+            FunctionCounter.builder("dedup.restore.records", restored, LongAdder::sum)
+                    .tag("store", storeName)
+                    .description("Records restored into the store")
+                    .register(registry);
+            Gauge.builder("dedup.restore.remaining", this, StoreRestore::remaining)
+                    .tag("store", storeName)
+                    .description("Records left to restore into the store")
+                    .register(registry);
+            Gauge.builder("dedup.restore.rate", this, StoreRestore::rate)
+                    .tag("store", storeName)
+                    .description("Records restored per second since the current restore started")
+                    .register(registry);
+            this.duration = Timer.builder("dedup.restore.duration")
+                    .tag("store", storeName)
+                    .description("Time to restore one partition of the store")
+                    .register(registry);
+        }
+
+        void start(TopicPartition partition, long records) {
+            if (partitions.isEmpty()) {
+                restoreStart = System.nanoTime();
+                restoredAtStart = restored.sum();
+            }
+            partitions.put(partition, new long[]{records, System.nanoTime()});
+        }
+
+        void restored(TopicPartition partition, long records) {
+            restored.add(records);
+            long[] progress = partitions.get(partition);
+            if (progress != null) {
+                progress[0] = Math.max(0, progress[0] - records);
+            }
+        }
+
+        /**
+         * @return the partition's restore time in milliseconds
+         */
+        long end(TopicPartition partition) {
+            long[] progress = partitions.remove(partition);
+            if (progress == null) {
+                return 0;
+            }
+            long nanos = System.nanoTime() - progress[1];
+            duration.record(nanos, TimeUnit.NANOSECONDS);
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        boolean isRestoring() {
+            return !partitions.isEmpty();
+        }
+
+        double remaining() {
+            return partitions.values().stream().mapToLong(progress -> progress[0]).sum();
+        }
+
+        double rate() {
+            if (partitions.isEmpty()) {
+                return 0;
+            }
+            double seconds = (System.nanoTime() - restoreStart) / 1e9;
+            return seconds <= 0 ? 0 : (restored.sum() - restoredAtStart) / seconds;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.path.stream.app;
+
+/**
+ * Outcome of an accepted record: the value to publish to the output topic and
+ * the fingerprint record to publish to the matching fingerprint topic.
+ * Rejected records are represented by a {@code null} result, deletes by a
+ * {@link #tombstone()} that publishes tombstones to both topics. A
+ * {@link #recordOnly} result updates the fingerprint topic only.
+ */
+public final class DedupResult<V> {
+
+    public final V value;
+    public final FingerprintRecord record;
+    // The value is a JSON Patch against the previous version, see DeltaEncoder
+    public final boolean patch;
+
+    public DedupResult(V value, FingerprintRecord record) {
+        this(value, record, false);
+    }
+
+    public DedupResult(V value, FingerprintRecord record, boolean patch) {
+        this.value = value;
+        this.record = record;
+        this.patch = patch;
+    }
+
+    /**
+     * A delete: null value and null fingerprint record.
+     */
+    public static <V> DedupResult<V> tombstone() {
+        return new DedupResult<>(null, null);
+    }
+
+    /**
+     * A rejected duplicate that carries a newer source version: null value,
+     * so nothing is published to the output topic.
+     */
+    public static <V> DedupResult<V> recordOnly(FingerprintRecord record) {
+        return new DedupResult<>(null, record);
+    }
+
+    public boolean isTombstone() {
+        return record == null;
+    }
+
+    public boolean isRecordOnly() {
+        return value == null && record != null;
+    }
+}
@@ -0,0 +1,264 @@
+package com.path.stream.app;
+
+import java.time.Duration;
+
+/**
+ * Settings of the dedup processors of one mapping: how values are read and
+ * fingerprinted, how long fingerprints count, what is published, and the
+ * shared objects of the mode (key filter, overlay, hashing pool).
+ * <p>
+ * DedupStreamsApplication builds one per mapping with
+ * {@link #forMapping}; benchmarks and tests use {@link #builder} and
+ * set only what they need. Unset options have the defaults of
+ * {@link DedupProperties}, and unset shared objects are left out.
+ */
+public final class DedupSettings<V> {
+
+    private final DedupValueFormat<V> format;
+    private final DocumentFingerprinter fingerprints;
+    private final Duration retention;
+    private final DeltaEncoder delta;
+    private final SourceVersion versions;
+    private final DedupMetrics metrics;
+    private final DedupProperties.Expiry expiry;
+    private final DedupProperties.Filter filter;
+    private final DedupProperties.Cache cache;
+    private final DedupProperties.Batch batch;
+    private final TopicRoutes routes;
+    private final KeyBloomFilter keyFilter;
+    private final InFlightOverlay overlay;
+    private final RecentFingerprints recent;
+    private final BatchHasher hasher;
+
+    private DedupSettings(Builder<V> builder) {
+        this.format = builder.format;
+        this.fingerprints = builder.fingerprints;
+        this.retention = builder.retention;
+        this.delta = builder.delta;
+        this.versions = builder.versions;
+        this.metrics = builder.metrics;
+        this.expiry = builder.expiry;
+        this.filter = builder.filter;
+        this.cache = builder.cache;
+        this.batch = builder.batch;
+        this.routes = builder.routes;
+        this.keyFilter = builder.keyFilter;
+        this.overlay = builder.overlay;
+        this.recent = builder.recent;
+        this.hasher = builder.hasher;
+    }
+
+    public static <V> Builder<V> builder(DedupValueFormat<V> format) {
+        return new Builder<>(format);
+    }
+
+    /**
+     * Builder with the mapping's options resolved against the application
+     * properties; the caller adds the metrics and the shared objects.
+     */
+    public static <V> Builder<V> forMapping(DedupTopicMapper.TopicMapping mapping, FingerprintEngine engine,
+                                            DedupValueFormat<V> format, DedupProperties properties) {
+        return new Builder<>(format)
+                .fingerprints(DocumentFingerprinter.forMapping(engine, mapping))
+                .retention(mapping.getRetention())
+                .delta(DeltaEncoder.forMapping(mapping))
+                .versions(SourceVersion.forMapping(mapping))
+                .expiry(properties.getExpiry())
+                .filter(properties.getFilter())
+                .cache(mapping.getCache(properties.getCache()))
+                .batch(properties.getBatch());
+    }
+
+    public DedupValueFormat<V> format() {
+        return format;
+    }
+
+    /**
+     * @return the mapping's fingerprinter, or null when routes resolve it per topic
+     */
+    public DocumentFingerprinter fingerprints() {
+        return fingerprints;
+    }
+
+    /**
+     * @return fingerprints older than this are ignored; zero keeps them
+     */
+    public Duration retention() {
+        return retention;
+    }
+
+    /**
+     * @return encoder of the mapping's updates, or null to publish full documents
+     */
+    public DeltaEncoder delta() {
+        return delta;
+    }
+
+    /**
+     * @return reader of the records' source versions, or null to decide on content only
+     */
+    public SourceVersion versions() {
+        return versions;
+    }
+
+    public DedupMetrics metrics() {
+        return metrics;
+    }
+
+    public DedupProperties.Expiry expiry() {
+        return expiry;
+    }
+
+    /**
+     * @return key filter settings of the partitioned stores
+     */
+    public DedupProperties.Filter filter() {
+        return filter;
+    }
+
+    /**
+     * @return TTL and per-task memory budget of the global mode's local cache
+     */
+    public DedupProperties.Cache cache() {
+        return cache;
+    }
+
+    public DedupProperties.Batch batch() {
+        return batch;
+    }
+
+    /**
+     * @return per-topic settings of the consolidated topology, or null
+     */
+    public TopicRoutes routes() {
+        return routes;
+    }
+
+    /**
+     * @return filter over the global store's keys, maintained by
+     * FingerprintTableProcessor; null to always read the store
+     */
+    public KeyBloomFilter keyFilter() {
+        return keyFilter;
+    }
+
+    /**
+     * @return records accepted by this instance that the global store has
+     * not applied yet; null to rely on the local cache alone
+     */
+    public InFlightOverlay overlay() {
+        return overlay;
+    }
+
+    /**
+     * @return fingerprints recently applied to the global store, to pre-warm
+     * the local cache with; null to start it empty
+     */
+    public RecentFingerprints recent() {
+        return recent;
+    }
+
+    /**
+     * @return hashing pool shared by all batching tasks, or null
+     */
+    public BatchHasher hasher() {
+        return hasher;
+    }
+
+    public static final class Builder<V> {
+
+        private final DedupValueFormat<V> format;
+        private DocumentFingerprinter fingerprints;
+        private Duration retention = Duration.ZERO;
+        private DeltaEncoder delta;
+        private SourceVersion versions;
+        private DedupMetrics metrics = DedupMetrics.noop();
+        private DedupProperties.Expiry expiry = new DedupProperties.Expiry();
+        private DedupProperties.Filter filter = new DedupProperties.Filter();
+        private DedupProperties.Cache cache = new DedupProperties.Cache();
+        private DedupProperties.Batch batch = new DedupProperties.Batch();
+        private TopicRoutes routes;
+        private KeyBloomFilter keyFilter;
+        private InFlightOverlay overlay;
+        private RecentFingerprints recent;
+        private BatchHasher hasher;
+
+        private Builder(DedupValueFormat<V> format) {
+            this.format = format;
+        }
+
+        public Builder<V> fingerprints(DocumentFingerprinter fingerprints) {
+            this.fingerprints = fingerprints;
+            return this;
+        }
+
+        public Builder<V> retention(Duration retention) {
+            this.retention = retention;
+            return this;
+        }
+
+        public Builder<V> delta(DeltaEncoder delta) {
+            this.delta = delta;
+            return this;
+        }
+
+        public Builder<V> versions(SourceVersion versions) {
+            this.versions = versions;
+            return this;
+        }
+
+        public Builder<V> metrics(DedupMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder<V> expiry(DedupProperties.Expiry expiry) {
+            this.expiry = expiry;
+            return this;
+        }
+
+        public Builder<V> filter(DedupProperties.Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        public Builder<V> cache(DedupProperties.Cache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder<V> batch(DedupProperties.Batch batch) {
+            this.batch = batch;
+            return this;
+        }
+
+        public Builder<V> routes(TopicRoutes routes) {
+            this.routes = routes;
+            return this;
+        }
+
+        public Builder<V> keyFilter(KeyBloomFilter keyFilter) {
+            this.keyFilter = keyFilter;
+            return this;
+        }
+
+        public Builder<V> overlay(InFlightOverlay overlay) {
+            this.overlay = overlay;
+            return this;
+        }
+
+        public Builder<V> recent(RecentFingerprints recent) {
+            this.recent = recent;
+            return this;
+        }
+
+        public Builder<V> hasher(BatchHasher hasher) {
+            this.hasher = hasher;
+            return this;
+        }
+
+        public DedupSettings<V> build() {
+            return new DedupSettings<>(this);
+        }
+    }
+}
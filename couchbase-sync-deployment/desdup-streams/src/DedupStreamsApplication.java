@@ -1,10 +1,13 @@
 package com.path.stream.app;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
-import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.*;
 import org.apache.kafka.streams.kstream.*;
 import org.apache.kafka.streams.processor.*;
@@ -13,29 +16,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.kafka.annotation.EnableKafkaStreams;
 import org.springframework.kafka.annotation.KafkaStreamsDefaultConfiguration;
 import org.springframework.kafka.config.KafkaStreamsConfiguration;
+import org.springframework.kafka.config.StreamsBuilderFactoryBeanConfigurer;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.time.Duration;
 import java.util.*;
-import java.util.Base64;
-import java.util.concurrent.TimeUnit;
 
 /**
  * =============================================================
  *  DedupStreamsApplication
  * =============================================================
  * This is the main entry point for the Kafka Streams Deduplication App.
- * It reads data from input topics, removes duplicates using both
- * a local in-memory cache (Caffeine) and a GlobalKTable for global
- * deduplication across distributed instances.
+ * It reads data from input topics and removes duplicates either with
+ * a local byte-budgeted fingerprint cache plus a GlobalKTable for global
+ * deduplication across distributed instances (dedup.mode=global), or
+ * with partition-local state stores (dedup.mode=partitioned).
  */
 @SpringBootApplication
 @EnableKafkaStreams
+@EnableConfigurationProperties(DedupProperties.class)
 public class DedupStreamsApplication {
 
     private static final Logger log = LoggerFactory.getLogger(DedupStreamsApplication.class);
@@ -53,201 +58,437 @@ public class DedupStreamsApplication {
      * - Bootstrap servers
      * - State directory
      * - SerDes configurations
+     * - Processing guarantee, commit interval, record cache and
+     *   producer batching from dedup.processing.*
+     * - Standby replicas and state directory from dedup.warmup.*
      */
     @Bean(name = KafkaStreamsDefaultConfiguration.DEFAULT_STREAMS_CONFIG_BEAN_NAME)
-    public KafkaStreamsConfiguration kafkaStreamsConfig() {
+    public KafkaStreamsConfiguration kafkaStreamsConfig(DedupProperties properties) {
+        DedupProperties.Processing processing = properties.getProcessing();
         Map<String, Object> props = new HashMap<>();
         props.put(StreamsConfig.APPLICATION_ID_CONFIG, "dedup-streams-app");
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
-        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 500L);
-        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, 0);
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, processing.getGuarantee().config());
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, processing.getCommitInterval().toMillis());
+        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, processing.getCacheMaxSize().toBytes());
+        props.put(StreamsConfig.producerPrefix(ProducerConfig.LINGER_MS_CONFIG), processing.getLingerMs());
+        props.put(StreamsConfig.producerPrefix(ProducerConfig.BATCH_SIZE_CONFIG), (int) processing.getBatchSize().toBytes());
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
-        // String tmpDir = System.getProperty("java.io.tmpdir");
-        // String stateDir = tmpDir.endsWith("/") ? tmpDir + "kafka-streams-dedup" : tmpDir + "/kafka-streams-dedup";
-        // props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
 
-        log.info("Kafka Streams configuration initialized");
+        // Standbys take over a failed task without restoring it from the changelog first
+        DedupProperties.Warmup warmup = properties.getWarmup();
+        int standbyReplicas = warmup.standbyReplicas(properties.getMode());
+        props.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, standbyReplicas);
+        if (warmup.getStateDir() != null && !warmup.getStateDir().isBlank()) {
+            props.put(StreamsConfig.STATE_DIR_CONFIG, warmup.getStateDir());
+        }
+
+        log.info("Kafka Streams configuration initialized (guarantee={}, profile={}, commit={}ms, cache={} bytes, standbys={}, state-dir={})",
+                processing.getGuarantee().config(), processing.getProfile(), processing.getCommitInterval().toMillis(),
+                processing.getCacheMaxSize().toBytes(), standbyReplicas, warmup.getStateDir());
         return new KafkaStreamsConfiguration(props);
     }
 
+    /**
+     * Topic mappings loaded once from dedup-mapping.properties.
+     */
+    @Bean
+    public DedupTopicMapper dedupTopicMapper() {
+        return new DedupTopicMapper("dedup-mapping.properties");
+    }
+
     /**
      * -------------------------------------------------------------
-     * Deduplication Topology Builder
+     * Fingerprint topics
      * -------------------------------------------------------------
-     * Reads topic mappings from a properties file and builds
-     * stream topologies dynamically.
-     * Each input topic has a corresponding output topic and a
-     * global state store for deduplication.
+     * Declares one compacted fingerprint topic per output topic so
+     * that KafkaAdmin creates any that are missing on startup.
+     * Mappings with a retention also get time-based deletion.
      */
     @Bean
-    public KStream<String, String> buildDedupStream(StreamsBuilder builder) throws Exception {
-        DedupTopicMapper mapper = new DedupTopicMapper("dedup-mapping.properties");
-        log.info("Building deduplication topology from mapping file");
-
+    public KafkaAdmin.NewTopics dedupFingerprintTopics(DedupTopicMapper mapper) {
+        List<NewTopic> topics = new ArrayList<>();
         for (String inputTopic : mapper.getAllInputTopics()) {
             DedupTopicMapper.TopicMapping mapping = mapper.getMapping(inputTopic);
-            String outputTopic = mapping.outputTopic;
+            TopicBuilder topic = TopicBuilder.name(mapping.getFingerprintTopic()).compact();
+            if (!mapping.getRetention().isZero()) {
+                // Segment deletion trims fingerprints past the retention; append time
+                // keeps replayed (old) records from being deleted right away
+                topic.config(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT + "," + TopicConfig.CLEANUP_POLICY_DELETE)
+                        .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(mapping.getRetention().toMillis()))
+                        .config(TopicConfig.MESSAGE_TIMESTAMP_TYPE_CONFIG, "LogAppendTime");
+            }
+            topics.add(topic.build());
+        }
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
+    }
 
-            String globalStoreName = ("global-" + outputTopic).replaceAll("[^A-Za-z0-9_\\-]", "_");
+    /**
+     * -------------------------------------------------------------
+     * Co-partitioning check (partitioned mode)
+     * -------------------------------------------------------------
+     * Fails startup when an input topic and its output topic have
+     * different partition counts, see CoPartitioningValidator.
+     */
+    @Bean
+    public CoPartitioningValidator dedupCoPartitioningValidator(KafkaAdmin kafkaAdmin, DedupTopicMapper mapper,
+                                                                DedupProperties properties) {
+        CoPartitioningValidator validator = new CoPartitioningValidator(kafkaAdmin.getConfigurationProperties());
+        if (properties.getMode() == DedupProperties.Mode.PARTITIONED
+                && properties.getPartitioned().isValidateCoPartitioning()) {
+            List<String> problems = validator.validate(mapper);
+            if (!problems.isEmpty()) {
+                throw new IllegalStateException("Partitioned dedup mode requires co-partitioned topics: " + problems);
+            }
+            log.info("Co-partitioning validated for {} topic mappings", mapper.getAllInputTopics().size());
+        }
+        return validator;
+    }
 
-            // Create GlobalKTable for deduplication across instances
-            builder.globalTable(
-                    outputTopic,
-                    Consumed.with(Serdes.String(), Serdes.String()),
-                    Materialized.<String, String, KeyValueStore<Bytes, byte[]>>as(globalStoreName)
-                            .withKeySerde(Serdes.String())
-                            .withValueSerde(Serdes.String())
-            );
+    /**
+     * -------------------------------------------------------------
+     * Delta output topics
+     * -------------------------------------------------------------
+     * Fails startup when a delta mapping publishes its patches to a
+     * compacted output topic, see DeltaTopicValidator.
+     */
+    @Bean
+    public DeltaTopicValidator dedupDeltaTopicValidator(KafkaAdmin kafkaAdmin, DedupTopicMapper mapper) {
+        DeltaTopicValidator validator = new DeltaTopicValidator(kafkaAdmin.getConfigurationProperties());
+        List<String> problems = validator.validate(mapper);
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("delta=json-patch cannot publish to compacted output topics: " + problems);
+        }
+        return validator;
+    }
 
-            // Stream from input topic
-            KStream<String, String> input = builder.stream(inputTopic, Consumed.with(Serdes.String(), Serdes.String()));
+    /**
+     * -------------------------------------------------------------
+     * Restore tracking and readiness
+     * -------------------------------------------------------------
+     * Publishes restore progress of the dedup stores and keeps the
+     * readiness probe down while they are restored, see
+     * DedupRestoreMonitor.
+     */
+    @Bean
+    public DedupRestoreMonitor dedupRestoreMonitor(ApplicationEventPublisher publisher, DedupProperties properties) {
+        return new DedupRestoreMonitor(publisher, Metrics.globalRegistry, properties.getWarmup());
+    }
 
-            // Deduplication transformation
-            KStream<String, String> deduped = input
-                    .transformValues(() -> new DedupTransformerWithCache(globalStoreName), Named.as("dedup-" + globalStoreName))
-                    .filter((k, v) -> v != null);
+    @Bean
+    public StreamsBuilderFactoryBeanConfigurer dedupRestoreListenerConfigurer(DedupRestoreMonitor monitor) {
+        return factoryBean -> {
+            factoryBean.setStateRestoreListener(monitor);
+            factoryBean.setStateListener(monitor);
+        };
+    }
 
-            // Write unique records to output topic
-            deduped.to(outputTopic, Produced.with(Serdes.String(), Serdes.String()));
+    /**
+     * -------------------------------------------------------------
+     * Hashing pool (batch mode)
+     * -------------------------------------------------------------
+     * One hashing pool for all batching tasks of the instance, shut
+     * down with the application context. Without batching it has no
+     * threads.
+     */
+    @Bean(destroyMethod = "close")
+    public BatchHasher dedupBatchHasher(DedupProperties properties) {
+        DedupProperties.Batch batch = properties.getBatch();
+        return new BatchHasher(batch.isEnabled() ? batch.getHashThreads() : 0);
+    }
 
-            log.info("Topology linked: input={} → output={} → store={}", inputTopic, outputTopic, globalStoreName);
-        }
-        return null;
+    /**
+     * -------------------------------------------------------------
+     * Fingerprint topics of pattern-matched inputs (consolidated mode)
+     * -------------------------------------------------------------
+     * Creates them compacted when their input topic is first routed,
+     * see FingerprintTopicValidator.
+     */
+    @Bean
+    public FingerprintTopicValidator dedupFingerprintTopicValidator(KafkaAdmin kafkaAdmin) {
+        return new FingerprintTopicValidator(kafkaAdmin.getConfigurationProperties());
     }
 
     /**
-     * =============================================================
-     * DedupTransformerWithCache
-     * =============================================================
-     * Custom transformer that:
-     * 1. Uses an in-memory cache (Caffeine) for short-term deduplication.
-     * 2. Uses a GlobalKTable for distributed deduplication.
+     * -------------------------------------------------------------
+     * Deduplication Topology Builder
+     * -------------------------------------------------------------
+     * Reads topic mappings from a properties file and builds
+     * stream topologies dynamically.
+     * Each input topic has a corresponding output topic and a
+     * compacted fingerprint topic holding one small
+     * FingerprintRecord per key. Depending on dedup.mode the
+     * fingerprints are looked up in a GlobalKTable built from that
+     * topic (global) or in a partition-local store (partitioned).
      */
-    public static class DedupTransformerWithCache implements ValueTransformerWithKey<String, String, String> {
+    @Bean
+    public KStream<String, String> buildDedupStream(StreamsBuilder builder, DedupTopicMapper mapper,
+                                                    DedupProperties properties, BatchHasher batchHasher,
+                                                    FingerprintTopicValidator fingerprintTopicValidator) throws Exception {
+        FingerprintEngine fingerprints = new FingerprintEngine(properties.getFingerprintAlgorithm());
+        DedupValueFormat<?> format = DedupValueFormat.of(properties.getValueFormat());
+        DecisionLog decisionLog = DecisionLog.of(properties.getDecisionLog());
+        log.info("Building {} deduplication topology from mapping file (fingerprint={}, values={})",
+                properties.getMode(), fingerprints.algorithm(), format);
 
-        private static final Logger logger = LoggerFactory.getLogger(DedupTransformerWithCache.class);
-        private final String globalStoreName;
-        private ReadOnlyKeyValueStore<String, ValueAndTimestamp<String>> globalStore;
-        private ProcessorContext context;
-        private Cache<String, String> localCache;
+        if (properties.getBatch().isEnabled()
+                && (properties.getMode() != DedupProperties.Mode.PARTITIONED || properties.getConsolidated().isEnabled())) {
+            throw new IllegalStateException("dedup.batch.enabled requires dedup.mode=partitioned without dedup.consolidated.enabled");
+        }
 
-        private final long cacheTtlSeconds = 10;
+        // A patch is computed against the stored version, which in global mode may lag behind the published one
+        if (properties.getMode() != DedupProperties.Mode.PARTITIONED && mapper.getAllInputTopics().stream()
+                .anyMatch(topic -> mapper.getMapping(topic).getDeltaMode() != DeltaEncoder.Mode.NONE)) {
+            throw new IllegalStateException("The delta option requires dedup.mode=partitioned");
+        }
 
-        public DedupTransformerWithCache(String globalStoreName) {
-            this.globalStoreName = globalStoreName;
+        if (properties.getConsolidated().isEnabled()) {
+            if (properties.getMode() != DedupProperties.Mode.PARTITIONED || properties.getPartitioned().isSeedFromGlobal()) {
+                throw new IllegalStateException("dedup.consolidated.enabled requires dedup.mode=partitioned without seed-from-global");
+            }
+            if (properties.getCoalesce().getMode() != UpdateCoalescer.Mode.NONE || mapper.getAllInputTopics().stream()
+                    .anyMatch(topic -> mapper.getMapping(topic).getCoalesce(properties.getCoalesce()).getMode() != UpdateCoalescer.Mode.NONE)) {
+                throw new IllegalStateException("Coalescing (dedup.coalesce.mode, coalesce option) is not supported with dedup.consolidated.enabled");
+            }
+            linkConsolidatedTopology(builder, new TopicRoutes(mapper, fingerprints, properties.getConsolidated(), decisionLog,
+                            fingerprintTopicValidator),
+                    format, properties);
+            return null;
         }
 
-        /**
-         * -------------------------------------------------------------
-         * Initialize transformer context and cache
-         * -------------------------------------------------------------
-         * Loads the global state store and initializes Caffeine cache.
-         */
-        @Override
-        public void init(ProcessorContext context) {
-            this.context = context;
-            this.localCache = Caffeine.newBuilder()
-                    .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
-                    .maximumSize(100_000)
-                    .build();
-
-            logger.info("Initializing DedupTransformerWithCache for store='{}'", globalStoreName);
-
-            try {
-                this.globalStore =
-                        (ReadOnlyKeyValueStore<String, ValueAndTimestamp<String>>) context.getStateStore(globalStoreName);
-                if (globalStore != null) {
-                    logger.info("Global store '{}' loaded successfully", globalStoreName);
-                }
-            } catch (Exception e) {
-                logger.warn("Global store '{}' not available at init: {}", globalStoreName, e.getMessage());
+        BatchHasher hasher = properties.getBatch().isEnabled() ? batchHasher : null;
+        for (String inputTopic : mapper.getAllInputTopics()) {
+            DedupTopicMapper.TopicMapping mapping = mapper.getMapping(inputTopic);
+            DedupMetrics metrics = DedupMetrics.forTopic(Metrics.globalRegistry, inputTopic, decisionLog);
+            if (properties.getMode() == DedupProperties.Mode.PARTITIONED) {
+                linkPartitionedTopology(builder, inputTopic, mapping, fingerprints, format, properties, metrics, hasher);
+            } else {
+                linkGlobalTopology(builder, inputTopic, mapping, fingerprints, format, properties, metrics);
             }
+        }
+        return null;
+    }
 
-            // Re-check store availability periodically
-            context.schedule(Duration.ofSeconds(3), PunctuationType.WALL_CLOCK_TIME, timestamp -> {
-                if (globalStore == null) {
-                    try {
-                        this.globalStore =
-                                (ReadOnlyKeyValueStore<String, ValueAndTimestamp<String>>) context.getStateStore(globalStoreName);
-                        if (globalStore != null) {
-                            logger.info("Global store '{}' became available at runtime.", globalStoreName);
-                        }
-                    } catch (Exception ignored) {}
-                }
-            });
+    /**
+     * Wires input topic → global dedup transformer → output and fingerprint
+     * topics for one mapping. Values keep the configured format end to end;
+     * only the key is decoded.
+     */
+    private <V> void linkGlobalTopology(StreamsBuilder builder, String inputTopic, DedupTopicMapper.TopicMapping mapping,
+                                        FingerprintEngine fingerprints, DedupValueFormat<V> format,
+                                        DedupProperties properties, DedupMetrics metrics) {
+        KeyBloomFilter keyFilter = properties.getFilter().isEnabled() ? new KeyBloomFilter(properties.getFilter()) : null;
+        InFlightOverlay overlay = properties.getOverlay().isEnabled() ? new InFlightOverlay(properties.getOverlay()) : null;
+        RecentFingerprints recent = properties.getWarmup().isPrewarmCache()
+                ? new RecentFingerprints(properties.getWarmup().getPrewarmMaxEntries(), mapping.getCache(properties.getCache()).getTtl())
+                : null;
+        DedupSettings<V> settings = DedupSettings.forMapping(mapping, fingerprints, format, properties)
+                .metrics(metrics)
+                .keyFilter(keyFilter)
+                .overlay(overlay)
+                .recent(recent)
+                .build();
+        String globalStoreName = addFingerprintTable(builder, mapping.getFingerprintTopic(), settings, properties);
+        if (keyFilter != null) {
+            keyFilter.bindTo(Metrics.globalRegistry, Tags.of("store", globalStoreName));
+        }
+        if (overlay != null) {
+            overlay.bindTo(Metrics.globalRegistry, Tags.of("store", globalStoreName));
         }
 
-        /**
-         * -------------------------------------------------------------
-         * Core transformation logic
-         * -------------------------------------------------------------
-         * Checks:
-         * 1. Local cache (Caffeine)
-         * 2. Global store (GlobalKTable)
-         * If duplicate → skips record, else → returns value.
-         */
-        @Override
-        public String transform(String key, String value) {
-            if (key == null || value == null) {
-                return null;
-            }
+        // Stream from input topic
+        KStream<String, V> input = coalesce(builder,
+                builder.stream(inputTopic, Consumed.with(Serdes.String(), format.serde())),
+                inputTopic, mapping, format, properties, metrics);
 
-            String newHash = computeHash(value);
+        // Deduplication transformation
+        KStream<String, DedupResult<V>> deduped = input
+                .transformValues(() -> new DedupTransformerWithCache<>(globalStoreName, settings),
+                        Named.as("dedup-" + globalStoreName))
+                .filter((k, result) -> result != null);
 
-            // Step 1: Check in-memory cache
-            String cached = localCache.getIfPresent(key);
-            if (cached != null && cached.equals(newHash)) {
-                logger.info("[CACHE HIT] Duplicate detected for key={}", key);
-                return null;
-            }
+        publish(deduped, mapping, format);
+        log.info("Topology linked: input={} → output={} → fingerprints={} → store={} (fingerprint={}, filter={}, overlay={})",
+                inputTopic, mapping.outputTopic, mapping.getFingerprintTopic(), globalStoreName, settings.fingerprints().mode(),
+                keyFilter != null, overlay != null);
+    }
 
-            // Step 2: Check global store
-            if (globalStore != null) {
-                try {
-                    ValueAndTimestamp<String> storedRecord = globalStore.get(key);
-                    if (storedRecord != null) {
-                        String storedHash = computeHash(storedRecord.value());
-                        if (storedHash.equals(newHash)) {
-                            logger.info("[GLOBAL HIT] Duplicate found in GlobalKTable for key={}", key);
-                            localCache.put(key, newHash);
-                            return null;
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.error("Error reading global store '{}' for key={}: {}", globalStoreName, key, e.getMessage());
-                }
-            }
+    /**
+     * Wires input topic → partitioned dedup transformer → output and
+     * fingerprint topics for one mapping. Each mapping gets its own
+     * changelogged store so keys of different topics never collide and
+     * every input topic stays an independent sub-topology. With a hasher,
+     * records are deduplicated in micro-batches by BatchingDedupProcessor.
+     */
+    private <V> void linkPartitionedTopology(StreamsBuilder builder, String inputTopic, DedupTopicMapper.TopicMapping mapping,
+                                             FingerprintEngine fingerprints, DedupValueFormat<V> format,
+                                             DedupProperties properties, DedupMetrics metrics, BatchHasher hasher) {
+        String storeName = ("dedup-" + inputTopic).replaceAll("[^A-Za-z0-9_\\-]", "_");
+        builder.addStateStore(dedupStore(storeName, properties));
 
-            // Step 3: Accept new record
-            localCache.put(key, newHash);
-            logger.info("[ACCEPT] New record accepted for key={}", key);
-            return value;
-        }
+        DedupSettings<V> settings = DedupSettings.forMapping(mapping, fingerprints, format, properties)
+                .metrics(metrics)
+                .hasher(hasher)
+                .build();
+
+        // During migration from global mode, keys missing locally are looked up in the fingerprint topic
+        String seedStoreName = properties.getPartitioned().isSeedFromGlobal() ? addFingerprintTable(builder, mapping.getFingerprintTopic(), settings, properties) : null;
+
+        KStream<String, V> input = coalesce(builder,
+                builder.stream(inputTopic, Consumed.with(Serdes.String(), format.serde())),
+                inputTopic, mapping, format, properties, metrics);
 
-        @Override
-        public void close() {
-            logger.info("Closing DedupTransformerWithCache for store='{}'", globalStoreName);
+        KStream<String, DedupResult<V>> deduped;
+        if (hasher != null) {
+            String pendingStoreName = storeName + "-pending";
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                    Stores.inMemoryKeyValueStore(pendingStoreName),
+                    Serdes.Long(),
+                    Serdes.ByteArray()
+            ).withLoggingEnabled(new HashMap<>()).withCachingEnabled()); // entries flushed between commits are logged as tombstones only
+            deduped = input.process(() -> new BatchingDedupProcessor<>(storeName, pendingStoreName, seedStoreName, settings),
+                    Named.as("dedup-" + storeName), storeName, pendingStoreName);
+        } else {
+            deduped = input
+                    .transformValues(() -> new DedupTransformer<>(storeName, seedStoreName, settings),
+                            Named.as("dedup-" + storeName), storeName)
+                    .filter((k, result) -> result != null);
         }
+
+        publish(deduped, mapping, format);
+        log.info("Topology linked: input={} → output={} → fingerprints={} → store={} (fingerprint={}, seed={}, batched={})",
+                inputTopic, mapping.outputTopic, mapping.getFingerprintTopic(), storeName, settings.fingerprints().mode(), seedStoreName,
+                hasher != null);
     }
 
     /**
-     * -------------------------------------------------------------
-     * computeHash()
-     * -------------------------------------------------------------
-     * Generates a SHA-256 hash of a JSON string for duplicate comparison.
+     * Wires all mapped input topics → one partitioned dedup transformer →
+     * their output and fingerprint topics. A single source, store and
+     * sub-topology serve every mapping: store keys are prefixed with the
+     * input topic, and sinks pick the output and fingerprint topic of each
+     * record's input topic from the routes.
      */
-    private static String computeHash(String json) {
-        if (json == null) return "";
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (Exception e) {
-            log.error("Error computing hash: {}", e.getMessage());
-            return "";
+    private <V> void linkConsolidatedTopology(StreamsBuilder builder, TopicRoutes routes, DedupValueFormat<V> format,
+                                              DedupProperties properties) {
+        String storeName = properties.getConsolidated().getStoreName();
+        builder.addStateStore(dedupStore(storeName, properties));
+
+        DedupSettings<V> settings = DedupSettings.builder(format)
+                .routes(routes)
+                .expiry(properties.getExpiry())
+                .filter(properties.getFilter())
+                .build();
+
+        KStream<String, V> input = builder.stream(routes.sourcePattern(), Consumed.with(Serdes.String(), format.serde()));
+
+        KStream<String, DedupResult<V>> deduped = input
+                .transformValues(() -> new DedupTransformer<>(storeName, null, settings),
+                        Named.as("dedup-" + storeName), storeName)
+                .filter((k, result) -> result != null);
+
+        deduped.processValues(OutputValueProcessor<V>::new)
+                .to(routes.<V>outputTopics(), Produced.with(Serdes.String(), format.serde()));
+        deduped.mapValues(result -> result.record)
+                .to(routes.<FingerprintRecord>fingerprintTopics(), Produced.with(Serdes.String(), new FingerprintRecordSerde()));
+        log.info("Consolidated topology linked: inputs={} → store={}", routes.sourcePattern(), storeName);
+    }
+
+    /**
+     * Puts an UpdateCoalescer in front of deduplication when the mapping
+     * coalesces updates, and returns the input unchanged otherwise. Its
+     * buffer and deadline index are changelogged RocksDB stores; with a
+     * record cache configured, repeated updates of a hot key are collapsed
+     * in memory before they reach RocksDB.
+     */
+    private static <V> KStream<String, V> coalesce(StreamsBuilder builder, KStream<String, V> input, String inputTopic,
+                                                   DedupTopicMapper.TopicMapping mapping, DedupValueFormat<V> format,
+                                                   DedupProperties properties, DedupMetrics metrics) {
+        DedupProperties.Coalesce coalesce = mapping.getCoalesce(properties.getCoalesce());
+        if (coalesce.getMode() == UpdateCoalescer.Mode.NONE) {
+            return input;
         }
+        String bufferStoreName = ("coalesce-" + inputTopic).replaceAll("[^A-Za-z0-9_\\-]", "_");
+        String indexStoreName = bufferStoreName + "-index";
+        builder.addStateStore(coalesceStore(bufferStoreName, Serdes.String(), properties));
+        builder.addStateStore(coalesceStore(indexStoreName, Serdes.Bytes(), properties));
+        log.info("Coalescing {} (mode={}, window={}ms, max-delay={}ms, hot-rate={}/s)", inputTopic, coalesce.getMode(),
+                coalesce.getWindow().toMillis(), coalesce.getMaxDelay().toMillis(), coalesce.getHotRate());
+        return input.process(() -> new UpdateCoalescer<>(bufferStoreName, indexStoreName, format, coalesce, metrics),
+                Named.as(bufferStoreName), bufferStoreName, indexStoreName);
+    }
+
+    private static <K> StoreBuilder<KeyValueStore<K, byte[]>> coalesceStore(String storeName, Serde<K> keySerde,
+                                                                         DedupProperties properties) {
+        StoreBuilder<KeyValueStore<K, byte[]>> store = Stores.keyValueStoreBuilder(
+                storeSupplier(storeName, properties),
+                keySerde,
+                Serdes.ByteArray()
+        ).withLoggingEnabled(new HashMap<>());
+        return properties.getProcessing().getCacheMaxSize().toBytes() > 0 ? store.withCachingEnabled() : store;
+    }
+
+    /**
+     * Changelogged store of the partitioned modes. With a record cache
+     * configured, repeated writes of a key are collapsed in memory and only
+     * the latest one reaches RocksDB and the changelog on commit.
+     */
+    private static StoreBuilder<KeyValueStore<String, FingerprintRecord>> dedupStore(String storeName, DedupProperties properties) {
+        StoreBuilder<KeyValueStore<String, FingerprintRecord>> store = Stores.keyValueStoreBuilder(
+                storeSupplier(storeName, properties),
+                Serdes.String(),
+                new FingerprintRecordSerde()
+        ).withLoggingEnabled(new HashMap<>()); // enable changelog
+        return properties.getProcessing().getCacheMaxSize().toBytes() > 0 ? store.withCachingEnabled() : store;
+    }
+
+    /**
+     * RocksDB by default, heap stores with dedup.store-type=in-memory.
+     */
+    private static KeyValueBytesStoreSupplier storeSupplier(String storeName, DedupProperties properties) {
+        return properties.getStoreType() == DedupProperties.StoreType.IN_MEMORY
+                ? Stores.inMemoryKeyValueStore(storeName)
+                : Stores.persistentKeyValueStore(storeName);
+    }
+
+    /**
+     * Materializes a fingerprint topic as a global store and returns its name.
+     * The store has the same layout as a GlobalKTable's; it is maintained by
+     * FingerprintTableProcessor so that the optional key filter sees every
+     * update and is rebuilt after restoration, applied records leave the
+     * optional in-flight overlay, and the most recent records are kept for
+     * pre-warming local caches.
+     */
+    private static String addFingerprintTable(StreamsBuilder builder, String fingerprintTopic, DedupSettings<?> settings,
+                                              DedupProperties properties) {
+        String globalStoreName = ("global-" + fingerprintTopic).replaceAll("[^A-Za-z0-9_\\-]", "_");
+        builder.addGlobalStore(
+                Stores.timestampedKeyValueStoreBuilder(
+                        properties.getStoreType() == DedupProperties.StoreType.IN_MEMORY
+                                ? Stores.inMemoryKeyValueStore(globalStoreName)
+                                : Stores.persistentTimestampedKeyValueStore(globalStoreName),
+                        Serdes.String(),
+                        new FingerprintRecordSerde()
+                ).withLoggingDisabled(), // the fingerprint topic is the changelog
+                fingerprintTopic,
+                Consumed.with(Serdes.String(), new FingerprintRecordSerde()),
+                () -> new FingerprintTableProcessor(globalStoreName, settings)
+        );
+        return globalStoreName;
+    }
+
+    /**
+     * Writes unique records (or their patches) to the output topic and their
+     * fingerprints to the fingerprint topic. Both modes keep the fingerprint
+     * topic current, which is what allows switching between them.
+     */
+    private static <V> void publish(KStream<String, DedupResult<V>> deduped, DedupTopicMapper.TopicMapping mapping,
+                                    DedupValueFormat<V> format) {
+        deduped.processValues(OutputValueProcessor<V>::new)
+                .to(mapping.outputTopic, Produced.with(Serdes.String(), format.serde()));
+        deduped.mapValues(result -> result.record)
+                .to(mapping.getFingerprintTopic(), Produced.with(Serdes.String(), new FingerprintRecordSerde()));
     }
 }
@@ -1,7 +1,17 @@
 package com.path.stream.app;
 
+import org.springframework.util.unit.DataSize;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -10,12 +20,56 @@ import java.util.Set;
  * (e.g., dedup-mapping.properties) from the classpath.
  * These mappings are used by the Kafka Streams topology to dynamically
  * wire deduplication pipelines between input and output topics.
+ * <p>
+ * Besides {@code input-topic=output-topic} entries the file may hold per-topic
+ * options declared as {@code input-topic.<option>=value}, for example:
+ * <pre>
+ * cb.encounters=dedup.encounters
+ * cb.encounters.fingerprint=canonical
+ * cb.encounters.ignore-paths=_sync,_rev,meta,payload.ingestedAt
+ * cb.encounters.delta=json-patch
+ * cb.billing.coalesce=hot
+ * </pre>
  */
 public class DedupTopicMapper {
 
+    // Fingerprint mode for the topic: raw (default) or canonical
+    public static final String FINGERPRINT_OPTION = "fingerprint";
+    // Comma separated JSON paths excluded from canonical fingerprints
+    public static final String IGNORE_PATHS_OPTION = "ignore-paths";
+    // Compacted topic holding the fingerprint records of the output topic
+    public static final String FINGERPRINT_TOPIC_OPTION = "fingerprint-topic";
+    // How long a key's fingerprint is kept after its last accepted version (0 = forever)
+    public static final String RETENTION_OPTION = "retention.ms";
+    // Local fingerprint cache (global mode): entry TTL and per-task memory budget
+    public static final String CACHE_TTL_OPTION = "cache.ttl.ms";
+    public static final String CACHE_MAX_BYTES_OPTION = "cache.max-bytes";
+    // Publish updates as none (full documents, default) or json-patch (changed top-level members only)
+    public static final String DELTA_OPTION = "delta";
+    // Share of changed members above which the full document is published instead of a patch
+    public static final String DELTA_MAX_CHANGE_RATIO_OPTION = "delta.max-change-ratio";
+    // Source version (CAS or revision) of a record: header name, and JSON path used when the header is missing
+    public static final String VERSION_HEADER_OPTION = "version.header";
+    public static final String VERSION_PATH_OPTION = "version.path";
+    // Buffer updates and emit the latest per key: none, all or hot keys; window, max delay and hot-key rate
+    public static final String COALESCE_OPTION = "coalesce";
+    public static final String COALESCE_WINDOW_OPTION = "coalesce.window.ms";
+    public static final String COALESCE_MAX_DELAY_OPTION = "coalesce.max-delay.ms";
+    public static final String COALESCE_HOT_RATE_OPTION = "coalesce.hot-rate";
+
+    private static final List<String> OPTIONS = Arrays.asList(
+            FINGERPRINT_OPTION, IGNORE_PATHS_OPTION, FINGERPRINT_TOPIC_OPTION, RETENTION_OPTION,
+            CACHE_TTL_OPTION, CACHE_MAX_BYTES_OPTION, DELTA_OPTION, DELTA_MAX_CHANGE_RATIO_OPTION,
+            VERSION_HEADER_OPTION, VERSION_PATH_OPTION, COALESCE_OPTION, COALESCE_WINDOW_OPTION,
+            COALESCE_MAX_DELAY_OPTION, COALESCE_HOT_RATE_OPTION);
+
     // Stores all topic mappings from the properties file
     private final Properties mappings = new Properties();
 
+    // Input topic -> output topic, and input topic -> options
+    private final Map<String, String> outputTopics = new HashMap<>();
+    private final Map<String, Map<String, String>> topicOptions = new HashMap<>();
+
     /**
      * Loads the mapping file from the classpath.
      *
@@ -37,14 +91,119 @@ public class DedupTopicMapper {
         } catch (IOException e) {
             throw new RuntimeException("Failed to load topic mapping file: " + filePath, e);
         }
+        index();
+    }
+
+    /**
+     * Uses mappings that are already loaded, e.g. built in code by a test harness.
+     */
+    public DedupTopicMapper(Properties mappings) {
+        this.mappings.putAll(mappings);
+        index();
+    }
+
+    /**
+     * Splits the loaded properties into topic mappings and per-topic options.
+     * A key is an option only if it ends with a known option name and the
+     * remaining prefix is itself a mapped input topic. Any other key is an
+     * input topic, including one whose name extends another mapped topic
+     * (e.g. {@code cb.encounters.archive}), unless the extension looks like
+     * a misspelled option (see {@link #similarOption}); such keys are rejected.
+     */
+    private void index() {
+        Set<String> keys = mappings.stringPropertyNames();
+        for (String key : keys) {
+            String option = optionOf(key, keys);
+            if (option == null) {
+                outputTopics.put(key, mappings.getProperty(key).trim());
+            } else {
+                String topic = key.substring(0, key.length() - option.length() - 1);
+                topicOptions.computeIfAbsent(topic, t -> new HashMap<>())
+                        .put(option, mappings.getProperty(key).trim());
+            }
+        }
+        for (String key : outputTopics.keySet()) {
+            for (int dot = key.indexOf('.'); dot > 0; dot = key.indexOf('.', dot + 1)) {
+                String topic = key.substring(0, dot);
+                String suffix = key.substring(dot + 1);
+                String similar = outputTopics.containsKey(topic) ? similarOption(suffix) : null;
+                if (similar != null) {
+                    throw new IllegalArgumentException("Unknown option '" + suffix + "' for input topic " + topic
+                            + " (did you mean '" + similar + "'?)");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the closest option if the suffix looks like one, else null. A
+     * suffix looks like an option when its first segment is that of an
+     * option (e.g. {@code cache.ttl}), or is within one edit of an option's
+     * name or first segment, two for segments longer than five characters
+     * (e.g. {@code ignore-path}).
+     */
+    private static String similarOption(String suffix) {
+        String segment = firstSegment(suffix);
+        int maxDistance = segment.length() > 5 ? 2 : 1;
+        boolean similar = false;
+        String closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (String option : OPTIONS) {
+            String optionSegment = firstSegment(option);
+            int distance = editDistance(suffix, option);
+            similar |= segment.equals(optionSegment) || distance <= maxDistance
+                    || editDistance(segment, optionSegment) <= maxDistance;
+            if (distance < closestDistance) {
+                closest = option;
+                closestDistance = distance;
+            }
+        }
+        return similar ? closest : null;
+    }
+
+    private static String firstSegment(String name) {
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * Levenshtein distance of two short names.
+     */
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static String optionOf(String key, Set<String> keys) {
+        for (String option : OPTIONS) {
+            String suffix = "." + option;
+            if (key.endsWith(suffix) && keys.contains(key.substring(0, key.length() - suffix.length()))) {
+                return option;
+            }
+        }
+        return null;
     }
 
     /**
      * Returns all available input topic names defined in the mapping file.
-     * Each property key is treated as an input topic name.
+     * Each property key that is not a per-topic option is treated as an input topic name.
      */
     public Set<String> getAllInputTopics() {
-        return mappings.stringPropertyNames();
+        return Collections.unmodifiableSet(new LinkedHashSet<>(outputTopics.keySet()));
     }
 
     /**
@@ -54,21 +213,150 @@ public class DedupTopicMapper {
      * @return TopicMapping object containing output topic
      */
     public TopicMapping getMapping(String inputTopic) {
-        String outputTopic = mappings.getProperty(inputTopic);
+        String outputTopic = outputTopics.get(inputTopic);
         if (outputTopic == null) {
             throw new IllegalArgumentException("No mapping found for input topic: " + inputTopic);
         }
-        return new TopicMapping(outputTopic);
+        return new TopicMapping(outputTopic, topicOptions.getOrDefault(inputTopic, Collections.emptyMap()));
     }
 
     /**
-     * Represents a simple mapping of input → output topic.
+     * Represents a mapping of input → output topic together with its options.
      */
     public static class TopicMapping {
         public final String outputTopic;
+        private final Map<String, String> options;
 
         public TopicMapping(String outputTopic) {
+            this(outputTopic, Collections.emptyMap());
+        }
+
+        public TopicMapping(String outputTopic, Map<String, String> options) {
             this.outputTopic = outputTopic;
+            this.options = Collections.unmodifiableMap(new HashMap<>(options));
+        }
+
+        public String getOption(String name, String defaultValue) {
+            return options.getOrDefault(name, defaultValue);
+        }
+
+        /**
+         * Declaring ignored paths implies canonical fingerprints unless the mode is set explicitly.
+         */
+        public DocumentFingerprinter.Mode getFingerprintMode() {
+            String mode = options.get(FINGERPRINT_OPTION);
+            if (mode == null) {
+                return getIgnorePaths().isEmpty() ? DocumentFingerprinter.Mode.RAW : DocumentFingerprinter.Mode.CANONICAL;
+            }
+            try {
+                return DocumentFingerprinter.Mode.valueOf(mode.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown fingerprint mode '" + mode + "' for output topic " + outputTopic);
+            }
+        }
+
+        /**
+         * Defaults to {@code <output-topic>.fingerprints}.
+         */
+        public String getFingerprintTopic() {
+            return options.getOrDefault(FINGERPRINT_TOPIC_OPTION, outputTopic + ".fingerprints");
+        }
+
+        /**
+         * Returns {@link Duration#ZERO} when fingerprints are kept forever.
+         */
+        public Duration getRetention() {
+            return Duration.ofMillis(getLong(RETENTION_OPTION, 0));
+        }
+
+        /**
+         * Local cache settings for this mapping: the given defaults with any
+         * cache.ttl.ms / cache.max-bytes overrides applied.
+         */
+        public DedupProperties.Cache getCache(DedupProperties.Cache defaults) {
+            DedupProperties.Cache cache = new DedupProperties.Cache();
+            cache.setTtl(Duration.ofMillis(getLong(CACHE_TTL_OPTION, defaults.getTtl().toMillis())));
+            cache.setMaxSize(DataSize.ofBytes(getLong(CACHE_MAX_BYTES_OPTION, defaults.getMaxSize().toBytes())));
+            return cache;
+        }
+
+        /**
+         * Coalescing settings for this mapping: the given defaults with any
+         * coalesce / coalesce.window.ms / coalesce.max-delay.ms / coalesce.hot-rate
+         * overrides applied.
+         */
+        public DedupProperties.Coalesce getCoalesce(DedupProperties.Coalesce defaults) {
+            DedupProperties.Coalesce coalesce = new DedupProperties.Coalesce();
+            String mode = options.get(COALESCE_OPTION);
+            if (mode == null || mode.trim().isEmpty()) {
+                coalesce.setMode(defaults.getMode());
+            } else {
+                try {
+                    coalesce.setMode(UpdateCoalescer.Mode.valueOf(mode.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown coalesce mode '" + mode + "' for output topic " + outputTopic);
+                }
+            }
+            coalesce.setWindow(Duration.ofMillis(getLong(COALESCE_WINDOW_OPTION, defaults.getWindow().toMillis())));
+            coalesce.setMaxDelay(Duration.ofMillis(getLong(COALESCE_MAX_DELAY_OPTION, defaults.getMaxDelay().toMillis())));
+            coalesce.setHotRate((int) getLong(COALESCE_HOT_RATE_OPTION, defaults.getHotRate()));
+            coalesce.setMaxBufferedKeys(defaults.getMaxBufferedKeys());
+            coalesce.setInterval(defaults.getInterval());
+            return coalesce;
+        }
+
+        public DeltaEncoder.Mode getDeltaMode() {
+            String mode = options.get(DELTA_OPTION);
+            if (mode == null || mode.trim().isEmpty()) {
+                return DeltaEncoder.Mode.NONE;
+            }
+            try {
+                return DeltaEncoder.Mode.valueOf(mode.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown delta mode '" + mode + "' for output topic " + outputTopic);
+            }
+        }
+
+        /**
+         * Defaults to 0.5: a patch is published while at most half of the members changed.
+         */
+        public double getDeltaMaxChangeRatio() {
+            String value = options.get(DELTA_MAX_CHANGE_RATIO_OPTION);
+            if (value == null || value.trim().isEmpty()) {
+                return 0.5;
+            }
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + DELTA_MAX_CHANGE_RATIO_OPTION + " '" + value
+                        + "' for output topic " + outputTopic);
+            }
+        }
+
+        private long getLong(String name, long defaultValue) {
+            String value = options.get(name);
+            if (value == null || value.trim().isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + name + " '" + value + "' for output topic " + outputTopic);
+            }
+        }
+
+        public List<String> getIgnorePaths() {
+            String paths = options.get(IGNORE_PATHS_OPTION);
+            if (paths == null || paths.trim().isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<String> result = new ArrayList<>();
+            for (String path : paths.split(",")) {
+                if (!path.trim().isEmpty()) {
+                    result.add(path.trim());
+                }
+            }
+            return result;
         }
     }
 }
@@ -0,0 +1,241 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import org.apache.kafka.streams.kstream.ValueTransformerWithKey;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * =============================================================
+ * DedupTransformer
+ * =============================================================
+ * Transformer used by the partitioned dedup mode. It keeps the
+ * fingerprint record of every key in a partition-local persistent
+ * store backed by a changelog topic, so state is sharded across
+ * instances the same way the input topic is.
+ * <p>
+ * While migrating from the global mode, an optional read-only seed
+ * store (the global fingerprint table) is consulted for keys that
+ * are not in the local store yet.
+ * <p>
+ * With a retention configured, records older than the retention are
+ * treated as absent and removed in the background by a rate-limited
+ * {@link FingerprintStoreSweeper}.
+ * <p>
+ * A per-task {@link KeyBloomFilter}, rebuilt from the store when the task
+ * starts, lets never-seen keys skip the store read.
+ * <p>
+ * In the consolidated topology one transformer serves all input topics; the
+ * fingerprint mode, retention and meters are then looked up per record in
+ * {@link TopicRoutes} and store keys carry the input topic.
+ * <p>
+ * With a {@link DeltaEncoder}, the store also keeps the member hashes of
+ * each document and updates are published as patches.
+ * <p>
+ * With a {@link SourceVersion}, the stored record is read before the value is
+ * hashed: a record whose version is not newer than the stored one is
+ * rejected without hashing, so replays and out-of-order redeliveries cost a
+ * single store read. Newer versions are still hashed and compared, so a
+ * mutation that left the content unchanged is rejected as before.
+ * <p>
+ * Deletes (null values) remove the key from the store and are published as
+ * tombstones to the output and fingerprint topics, so a re-created document
+ * is accepted and compaction can drop the deleted one.
+ */
+public class DedupTransformer<V> implements ValueTransformerWithKey<String, V, DedupResult<V>> {
+
+    private final String storeName;
+    private final String seedStoreName;
+    private final DocumentFingerprinter fingerprints;
+    private final DedupValueFormat<V> format;
+    private final long retentionMs;
+    private final DedupProperties.Expiry expiry;
+    private final DedupProperties.Filter filterSettings;
+    private KeyBloomFilter keyFilter;
+    private List<Meter> filterMeters = Collections.emptyList();
+    private final DedupMetrics metrics;
+    private final TopicRoutes routes;
+    private final DeltaEncoder delta;
+    private final SourceVersion versions;
+    private KeyValueStore<String, FingerprintRecord> kvStore;
+    private ReadOnlyKeyValueStore<String, ValueAndTimestamp<FingerprintRecord>> seedStore;
+    private ProcessorContext context;
+
+    /**
+     * @param seedStoreName global fingerprint store read for keys missing from
+     *                      the local store, or null
+     * @param settings      settings of the mapping, or of the consolidated
+     *                      topology when they carry {@link TopicRoutes}
+     */
+    public DedupTransformer(String storeName, String seedStoreName, DedupSettings<V> settings) {
+        this.storeName = storeName;
+        this.seedStoreName = seedStoreName;
+        this.fingerprints = settings.fingerprints();
+        this.format = settings.format();
+        this.retentionMs = settings.retention().toMillis();
+        this.expiry = settings.expiry();
+        this.filterSettings = settings.filter();
+        this.metrics = settings.metrics();
+        this.routes = settings.routes();
+        this.delta = settings.delta();
+        this.versions = settings.versions();
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.kvStore = (KeyValueStore<String, FingerprintRecord>) context.getStateStore(storeName);
+        if (seedStoreName != null) {
+            this.seedStore =
+                    (ReadOnlyKeyValueStore<String, ValueAndTimestamp<FingerprintRecord>>) context.getStateStore(seedStoreName);
+        }
+        if (filterSettings.isEnabled()) {
+            // init runs once the store has been restored from its changelog
+            this.keyFilter = new KeyBloomFilter(filterSettings);
+            keyFilter.rebuild(kvStore.all(), kvStore.approximateNumEntries());
+            this.filterMeters = keyFilter.bindTo(Metrics.globalRegistry,
+                    Tags.of("store", storeName, "task", context.taskId().toString()));
+        }
+        if (routes != null && routes.hasRetention()) {
+            FingerprintStoreSweeper sweeper = new FingerprintStoreSweeper(kvStore, routes::retentionOf, expiry.getMaxEntriesPerSweep());
+            context.schedule(expiry.getInterval(), PunctuationType.WALL_CLOCK_TIME, sweeper::sweep);
+        } else if (retentionMs > 0) {
+            FingerprintStoreSweeper sweeper = new FingerprintStoreSweeper(kvStore, retentionMs, expiry.getMaxEntriesPerSweep());
+            context.schedule(expiry.getInterval(), PunctuationType.WALL_CLOCK_TIME, sweeper::sweep);
+        }
+    }
+
+    @Override
+    public DedupResult<V> transform(String key, V value) {
+        if (key == null) return null;
+
+        TopicRoutes.Route route = routes == null ? null : routes.route(context.topic());
+        DedupMetrics metrics = route == null ? this.metrics : route.metrics;
+        String storeKey = route == null ? key : route.storeKey(key);
+        DeltaEncoder delta = route == null ? this.delta : route.delta;
+        SourceVersion versions = route == null ? this.versions : route.versions;
+        long version = versions == null ? SourceVersion.NONE : versions.read(context.headers(), value);
+        if (value == null) {
+            return delete(key, storeKey, version, route == null ? retentionMs : route.retentionMs, metrics);
+        }
+
+        FingerprintRecord stored = lookup(storeKey, metrics);
+        if (stored == null) {
+            stored = seeded(key);
+        }
+        if (stored != null && stored.isExpired(route == null ? retentionMs : route.retentionMs, context.currentSystemTimeMs())) {
+            stored = null; // not swept yet, but outside the dedup window
+        }
+        if (stored != null && stored.supersedes(version)) {
+            metrics.record(stored.version() == version ? DedupMetrics.Decision.REJECTED_VERSION
+                    : DedupMetrics.Decision.REJECTED_STALE, key, stored);
+            return null; // replay or out-of-order, the body is never hashed
+        }
+
+        MemberHashes.Builder members = delta == null ? null : new MemberHashes.Builder();
+        long hashStart = System.nanoTime();
+        Fingerprint newHash = format.fingerprint(route == null ? fingerprints : route.fingerprinter, value, members);
+        metrics.recordHash(hashStart);
+
+        if (stored == null) {
+            FingerprintRecord record = FingerprintRecord.next(null, newHash, built(members), context.currentSystemTimeMs())
+                    .withVersion(version);
+            store(storeKey, record);
+            metrics.record(DedupMetrics.Decision.ACCEPTED, key, null);
+            return result(delta, value, null, record, metrics);
+        }
+
+        if (stored.fingerprint().equals(newHash)) {
+            if (version != SourceVersion.NONE && version != stored.version()) {
+                store(storeKey, stored.withVersion(version)); // later replays of this version skip hashing
+            }
+            metrics.record(DedupMetrics.Decision.REJECTED_STORE, key, stored);
+            return null; // duplicate
+        } else {
+            FingerprintRecord record = FingerprintRecord.next(stored, newHash, built(members), context.currentSystemTimeMs())
+                    .withVersion(version);
+            store(storeKey, record);
+            metrics.record(DedupMetrics.Decision.ACCEPTED, key, stored);
+            return result(delta, value, stored, record, metrics);
+        }
+    }
+
+    /**
+     * Removes the key and returns a tombstone, unless the store holds a
+     * newer source version than the delete's. Deletes of unknown keys are
+     * forwarded as well, since the output topic may still hold the document.
+     */
+    private DedupResult<V> delete(String key, String storeKey, long version, long retentionMs, DedupMetrics metrics) {
+        if (version != SourceVersion.NONE) {
+            FingerprintRecord stored = lookup(storeKey, metrics);
+            if (stored != null && !stored.isExpired(retentionMs, context.currentSystemTimeMs()) && stored.supersedes(version)) {
+                metrics.record(DedupMetrics.Decision.REJECTED_STALE, key, stored);
+                return null;
+            }
+        }
+        kvStore.delete(storeKey);
+        metrics.record(DedupMetrics.Decision.DELETED, key, null);
+        return DedupResult.tombstone();
+    }
+
+    private static MemberHashes built(MemberHashes.Builder members) {
+        return members == null ? null : members.build();
+    }
+
+    private DedupResult<V> result(DeltaEncoder delta, V value, FingerprintRecord stored, FingerprintRecord record,
+                                  DedupMetrics metrics) {
+        return delta == null ? new DedupResult<>(value, record) : delta.result(format, value, stored, record, metrics);
+    }
+
+    /**
+     * Reads the key from the local store unless the filter rules it out.
+     */
+    private FingerprintRecord lookup(String key, DedupMetrics metrics) {
+        if (keyFilter != null && !keyFilter.mightContain(key)) {
+            return null;
+        }
+        long lookupStart = System.nanoTime();
+        FingerprintRecord stored = kvStore.get(key);
+        metrics.recordStoreLookup(lookupStart);
+        if (stored == null && keyFilter != null) {
+            keyFilter.recordFalsePositive();
+        }
+        return stored;
+    }
+
+    private void store(String key, FingerprintRecord record) {
+        kvStore.put(key, record);
+        if (keyFilter != null) {
+            keyFilter.put(key);
+        }
+    }
+
+    /**
+     * Looks the key up in the seed store and copies a hit into the local
+     * store, so each key is read from the seed store at most once.
+     */
+    private FingerprintRecord seeded(String key) {
+        if (seedStore == null) {
+            return null;
+        }
+        ValueAndTimestamp<FingerprintRecord> seeded = seedStore.get(key);
+        if (seeded == null) {
+            return null;
+        }
+        store(key, seeded.value());
+        return seeded.value();
+    }
+
+    @Override
+    public void close() {
+        filterMeters.forEach(Metrics.globalRegistry::remove);
+    }
+}
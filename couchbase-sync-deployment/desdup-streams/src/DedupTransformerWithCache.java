@@ -0,0 +1,254 @@
+package com.path.stream.app;
+
+import org.apache.kafka.streams.kstream.ValueTransformerWithKey;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * =============================================================
+ * DedupTransformerWithCache
+ * =============================================================
+ * Custom transformer that:
+ * 1. Uses a byte-budgeted in-memory cache (FingerprintCache) for short-term deduplication.
+ * 2. Uses a global store of fingerprint records for distributed deduplication,
+ *    skipping the lookup when the shared KeyBloomFilter rules the key out.
+ * 3. Reads its own accepted records back from the InFlightOverlay until the
+ *    global store has applied them, so a duplicate that arrives while its
+ *    fingerprint is still on the way through the fingerprint topic is
+ *    rejected even after it fell out of the local cache.
+ * With a DeltaEncoder, updates are published as patches (see DedupTransformer).
+ * With a SourceVersion, records whose version is not newer than the overlay's
+ * or the store's are rejected before the value is hashed.
+ * Deletes (null values) leave the local cache, are marked in the overlay until
+ * the global store applies them, and are published as tombstones.
+ * With RecentFingerprints, the local cache is pre-warmed when the task starts.
+ */
+public class DedupTransformerWithCache<V> implements ValueTransformerWithKey<String, V, DedupResult<V>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DedupTransformerWithCache.class);
+    private final String globalStoreName;
+    private final DocumentFingerprinter fingerprints;
+    private final DedupValueFormat<V> format;
+    private ReadOnlyKeyValueStore<String, ValueAndTimestamp<FingerprintRecord>> globalStore;
+    private ProcessorContext context;
+    private FingerprintCache localCache;
+    private final KeyBloomFilter keyFilter;
+    private final InFlightOverlay overlay;
+    private final RecentFingerprints recent;
+    private final SourceVersion versions;
+    private final DedupMetrics metrics;
+
+    private final long retentionMs;
+    private final long cacheTtlMs;
+    private final long cacheMaxBytes;
+
+    /**
+     * @param settings settings of the mapping, with the global mode's key
+     *                 filter, overlay and recent fingerprints if enabled
+     */
+    public DedupTransformerWithCache(String globalStoreName, DedupSettings<V> settings) {
+        this.globalStoreName = globalStoreName;
+        this.fingerprints = settings.fingerprints();
+        this.format = settings.format();
+        this.retentionMs = settings.retention().toMillis();
+        this.cacheTtlMs = settings.cache().getTtl().toMillis();
+        this.cacheMaxBytes = settings.cache().getMaxSize().toBytes();
+        this.keyFilter = settings.keyFilter();
+        this.overlay = settings.overlay();
+        this.recent = settings.recent();
+        this.versions = settings.versions();
+        this.metrics = settings.metrics();
+    }
+
+    /**
+     * -------------------------------------------------------------
+     * Initialize transformer context and cache
+     * -------------------------------------------------------------
+     * Loads the global state store and allocates the local cache, pre-warmed
+     * from the recent fingerprints when configured.
+     */
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.localCache = new FingerprintCache(cacheMaxBytes, cacheTtlMs);
+
+        logger.info("Initializing DedupTransformerWithCache for store='{}' (cache: {} entries, ttl={}ms)",
+                globalStoreName, localCache.maxEntries(), cacheTtlMs);
+        if (recent != null) {
+            int warmed = recent.warm(localCache, context.currentSystemTimeMs());
+            logger.info("Pre-warmed the cache of store='{}' with {} recent fingerprints", globalStoreName, warmed);
+        }
+
+        try {
+            this.globalStore =
+                    (ReadOnlyKeyValueStore<String, ValueAndTimestamp<FingerprintRecord>>) context.getStateStore(globalStoreName);
+            if (globalStore != null) {
+                logger.info("Global store '{}' loaded successfully", globalStoreName);
+            }
+        } catch (Exception e) {
+            logger.warn("Global store '{}' not available at init: {}", globalStoreName, e.getMessage());
+        }
+
+        // Re-check store availability periodically
+        context.schedule(Duration.ofSeconds(3), PunctuationType.WALL_CLOCK_TIME, timestamp -> {
+            if (globalStore == null) {
+                try {
+                    this.globalStore =
+                            (ReadOnlyKeyValueStore<String, ValueAndTimestamp<FingerprintRecord>>) context.getStateStore(globalStoreName);
+                    if (globalStore != null) {
+                        logger.info("Global store '{}' became available at runtime.", globalStoreName);
+                    }
+                } catch (Exception ignored) {}
+            }
+        });
+    }
+
+    /**
+     * -------------------------------------------------------------
+     * Core transformation logic
+     * -------------------------------------------------------------
+     * Checks:
+     * 0. Source version against the overlay or global store, before hashing
+     * 1. Local cache (FingerprintCache)
+     * 2. In-flight overlay, which is newer than the store when it has the key
+     * 3. Key filter, then global store
+     * If duplicate → skips record, else → returns value and its
+     * new fingerprint record. A delete → returns a tombstone after step 0.
+     */
+    @Override
+    public DedupResult<V> transform(String key, V value) {
+        if (key == null) {
+            return null;
+        }
+
+        long now = context.currentSystemTimeMs();
+        long version = versions == null ? SourceVersion.NONE : versions.read(context.headers(), value);
+
+        // Step 0: Compare source versions, the overlay being newer than the store when it has the key
+        FingerprintRecord inFlight = overlay != null ? overlay.get(key, now) : null;
+        // After a delete the store still holds the deleted version until it applies the tombstone
+        boolean storeRead = InFlightOverlay.isDeleted(inFlight);
+        if (storeRead) {
+            inFlight = null;
+        }
+        FingerprintRecord stored = inFlight;
+        if (version != SourceVersion.NONE) {
+            if (stored == null && !storeRead) {
+                stored = readStore(key, now);
+                storeRead = true;
+            }
+            if (stored != null && stored.supersedes(version)) {
+                metrics.record(stored.version() == version ? DedupMetrics.Decision.REJECTED_VERSION
+                        : DedupMetrics.Decision.REJECTED_STALE, key, stored);
+                return null; // replay or out-of-order, the body is never hashed
+            }
+        }
+        if (value == null) {
+            localCache.remove(key);
+            if (overlay != null) {
+                overlay.putDeleted(key, now);
+            }
+            metrics.record(DedupMetrics.Decision.DELETED, key, null);
+            return DedupResult.tombstone();
+        }
+
+        long hashStart = System.nanoTime();
+        Fingerprint newHash = format.fingerprint(fingerprints, value, null);
+        metrics.recordHash(hashStart);
+
+        // Step 1: Check in-memory cache
+        if (localCache.contains(key, newHash, now)) {
+            metrics.record(DedupMetrics.Decision.REJECTED_CACHE, key, null);
+            return newerVersion(key, stored, newHash, version, now);
+        }
+
+        // Step 2: Check records the global store has not caught up with
+        if (inFlight != null) {
+            if (inFlight.fingerprint().equals(newHash)) {
+                overlay.recordRejected();
+                metrics.record(DedupMetrics.Decision.REJECTED_OVERLAY, key, inFlight);
+                localCache.put(key, newHash, now);
+                return newerVersion(key, inFlight, newHash, version, now);
+            }
+            overlay.recordSuperseded();
+        }
+
+        // Step 3: Check global store
+        if (inFlight == null) {
+            if (!storeRead) {
+                stored = readStore(key, now);
+            }
+            if (stored != null && stored.fingerprint().equals(newHash)) {
+                metrics.record(DedupMetrics.Decision.REJECTED_STORE, key, stored);
+                localCache.put(key, newHash, now);
+                return newerVersion(key, stored, newHash, version, now);
+            }
+        }
+
+        // Step 4: Accept new record
+        FingerprintRecord record = FingerprintRecord.next(stored, newHash, now)
+                .withVersion(version);
+        localCache.put(key, newHash, now);
+        if (overlay != null) {
+            overlay.put(key, record, now);
+        }
+        metrics.record(DedupMetrics.Decision.ACCEPTED, key, stored);
+        return new DedupResult<>(value, record);
+    }
+
+    /**
+     * For a duplicate whose source version is newer than the one stored,
+     * returns a record-only result carrying that version, so that the
+     * fingerprint topic, the overlay and the local cache reflect it and later
+     * replays of the version are rejected before hashing.
+     *
+     * @return the record-only result, or null if there is no newer version
+     */
+    private DedupResult<V> newerVersion(String key, FingerprintRecord stored, Fingerprint hash, long version, long now) {
+        if (version == SourceVersion.NONE || stored == null || version == stored.version()
+                || !stored.fingerprint().equals(hash)) {
+            return null;
+        }
+        FingerprintRecord record = stored.withVersion(version);
+        localCache.put(key, hash, now);
+        if (overlay != null) {
+            overlay.put(key, record, now);
+        }
+        return DedupResult.recordOnly(record);
+    }
+
+    /**
+     * Reads the key from the global store unless the filter rules it out.
+     *
+     * @return the unexpired record, or null
+     */
+    private FingerprintRecord readStore(String key, long now) {
+        if (globalStore == null || (keyFilter != null && !keyFilter.mightContain(key))) {
+            return null;
+        }
+        try {
+            long lookupStart = System.nanoTime();
+            ValueAndTimestamp<FingerprintRecord> storedRecord = globalStore.get(key);
+            metrics.recordStoreLookup(lookupStart);
+            if (storedRecord == null && keyFilter != null) {
+                keyFilter.recordFalsePositive();
+            }
+            return storedRecord != null && !storedRecord.value().isExpired(retentionMs, now) ? storedRecord.value() : null;
+        } catch (Exception e) {
+            logger.error("Error reading global store '{}' for key={}: {}", globalStoreName, key, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        logger.info("Closing DedupTransformerWithCache for store='{}' (cache hits={}, misses={}, evictions={})",
+                globalStoreName, localCache.hits(), localCache.misses(), localCache.evictions());
+    }
+}
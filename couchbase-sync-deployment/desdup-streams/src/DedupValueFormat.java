@@ -0,0 +1,74 @@
+package com.path.stream.app;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * How record values travel through the dedup topology.
+ * <p>
+ * {@link #BYTES} consumes, fingerprints and produces the original record
+ * buffer without decoding it, so a document is never copied on the hot path.
+ * {@link #STRING} decodes values to UTF-8 Strings as earlier releases did.
+ */
+public final class DedupValueFormat<V> {
+
+    /**
+     * Format names accepted by {@code dedup.value-format}.
+     */
+    public enum Name {
+        BYTES,
+        STRING
+    }
+
+    public static final DedupValueFormat<byte[]> BYTES = new DedupValueFormat<>(Name.BYTES, Serdes.ByteArray());
+    public static final DedupValueFormat<String> STRING = new DedupValueFormat<>(Name.STRING, Serdes.String());
+
+    private final Name name;
+    private final Serde<V> serde;
+
+    private DedupValueFormat(Name name, Serde<V> serde) {
+        this.name = name;
+        this.serde = serde;
+    }
+
+    public static DedupValueFormat<?> of(Name name) {
+        return name == Name.STRING ? STRING : BYTES;
+    }
+
+    public Name name() {
+        return name;
+    }
+
+    public Serde<V> serde() {
+        return serde;
+    }
+
+    public Fingerprint fingerprint(DocumentFingerprinter fingerprinter, V value) {
+        return fingerprint(fingerprinter, value, null);
+    }
+
+    /**
+     * @param members receives the top-level member hashes, or null
+     */
+    public Fingerprint fingerprint(DocumentFingerprinter fingerprinter, V value, MemberHashes.Builder members) {
+        if (value instanceof byte[]) {
+            return fingerprinter.fingerprint((byte[]) value, members);
+        }
+        return fingerprinter.fingerprint((String) value, members);
+    }
+
+    /**
+     * Converts UTF-8 JSON produced by the app into a value of this format.
+     */
+    @SuppressWarnings("unchecked")
+    public V fromUtf8(byte[] json) {
+        return name == Name.STRING ? (V) new String(json, StandardCharsets.UTF_8) : (V) json;
+    }
+
+    @Override
+    public String toString() {
+        return name.name();
+    }
+}
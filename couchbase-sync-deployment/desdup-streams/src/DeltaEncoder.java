@@ -0,0 +1,129 @@
+package com.path.stream.app;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns accepted updates of a mapping with {@code delta=json-patch} into a
+ * JSON Patch (RFC 6902) holding only the top-level members whose canonical
+ * hash changed, instead of the whole document. Each changed or new member
+ * becomes an {@code add} operation, which replaces the member's previous
+ * value as a whole. (A JSON Merge Patch would merge nested objects instead
+ * and could not remove nested members.)
+ * <p>
+ * The previous version is known only through its {@link MemberHashes}, so
+ * the full document is emitted instead whenever a patch could not reproduce
+ * it: for the first version of a key, when the previous record has no
+ * member hashes, when a member was removed (its name is not known), when the
+ * document is not a JSON object, and when more than
+ * {@code delta.max-change-ratio} of the members changed.
+ * <p>
+ * Patches are marked with the {@value #HEADER} header on the output topic;
+ * consumers must apply them to the document they hold.
+ */
+public final class DeltaEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(DeltaEncoder.class);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public static final String HEADER = "dedup.delta";
+    public static final String JSON_PATCH = "json-patch";
+
+    /**
+     * What an accepted update is published as.
+     */
+    public enum Mode {
+        NONE,
+        JSON_PATCH
+    }
+
+    private final double maxChangeRatio;
+
+    public DeltaEncoder(double maxChangeRatio) {
+        this.maxChangeRatio = maxChangeRatio;
+    }
+
+    /**
+     * @return the encoder declared for the mapping, or null if it publishes full documents
+     * @throws IllegalArgumentException if deltas are requested without canonical fingerprints
+     */
+    public static DeltaEncoder forMapping(DedupTopicMapper.TopicMapping mapping) {
+        if (mapping.getDeltaMode() == Mode.NONE) {
+            return null;
+        }
+        if (mapping.getFingerprintMode() != DocumentFingerprinter.Mode.CANONICAL) {
+            throw new IllegalArgumentException("delta=" + mapping.getDeltaMode().name().toLowerCase(Locale.ROOT).replace('_', '-')
+                    + " requires fingerprint=canonical for output topic " + mapping.outputTopic);
+        }
+        return new DeltaEncoder(mapping.getDeltaMaxChangeRatio());
+    }
+
+    /**
+     * Builds the result of an accepted record: a patch against the previous
+     * version where possible, the full value otherwise.
+     */
+    public <V> DedupResult<V> result(DedupValueFormat<V> format, V value, FingerprintRecord previous,
+                                     FingerprintRecord record, DedupMetrics metrics) {
+        V patch = previous == null ? null : patch(format, value, previous.members(), record.members());
+        metrics.recordDelta(patch != null);
+        return patch != null ? new DedupResult<>(patch, record, true) : new DedupResult<>(value, record);
+    }
+
+    private <V> V patch(DedupValueFormat<V> format, V value, MemberHashes previous, MemberHashes current) {
+        if (previous == null || current == null) {
+            return null;
+        }
+        Set<Long> changed = new HashSet<>();
+        int kept = 0;
+        for (int i = 0; i < current.size(); i++) {
+            Long before = previous.valueOf(current.nameAt(i));
+            if (before == null || before != current.valueAt(i)) {
+                changed.add(current.nameAt(i));
+            }
+            if (before != null) {
+                kept++;
+            }
+        }
+        if (kept < previous.size() || changed.isEmpty() || changed.size() > maxChangeRatio * current.size()) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonParser parser = value instanceof byte[] ? JSON.createParser((byte[]) value) : JSON.createParser((String) value);
+             JsonGenerator generator = JSON.createGenerator(out)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            generator.writeStartArray();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (!changed.contains(MemberHashes.nameHash(name))) {
+                    parser.skipChildren();
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeStringField("op", "add");
+                generator.writeStringField("path", "/" + name.replace("~", "~0").replace("/", "~1"));
+                generator.writeFieldName("value");
+                generator.copyCurrentStructure(parser);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            log.debug("Publishing the full document, delta could not be built: {}", e.getMessage());
+            return null;
+        }
+        return format.fromUtf8(out.toByteArray());
+    }
+}
@@ -0,0 +1,80 @@
+package com.path.stream.app;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.config.TopicConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks that no output topic of a {@code delta} mapping is compacted.
+ * <p>
+ * A delta mapping publishes JSON Patches against the previous version of a
+ * document. Compaction keeps only the latest record of each key, which is
+ * usually a patch, so a consumer bootstrapping from a compacted output topic
+ * would have nothing to apply it to.
+ */
+public class DeltaTopicValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(DeltaTopicValidator.class);
+
+    private final Map<String, Object> adminConfig;
+
+    public DeltaTopicValidator(Map<String, Object> adminConfig) {
+        this.adminConfig = adminConfig;
+    }
+
+    /**
+     * @return one message per delta mapping whose output topic is compacted;
+     * topics that do not exist yet are reported in the log but not returned
+     */
+    public List<String> validate(DedupTopicMapper mapper) {
+        Map<String, ConfigResource> outputTopics = new LinkedHashMap<>();
+        for (String inputTopic : mapper.getAllInputTopics()) {
+            DedupTopicMapper.TopicMapping mapping = mapper.getMapping(inputTopic);
+            if (mapping.getDeltaMode() != DeltaEncoder.Mode.NONE) {
+                outputTopics.put(mapping.outputTopic, new ConfigResource(ConfigResource.Type.TOPIC, mapping.outputTopic));
+            }
+        }
+
+        List<String> problems = new ArrayList<>();
+        if (outputTopics.isEmpty()) {
+            return problems;
+        }
+        try (AdminClient admin = AdminClient.create(adminConfig)) {
+            Map<ConfigResource, KafkaFuture<Config>> configs = admin.describeConfigs(outputTopics.values()).values();
+
+            for (Map.Entry<String, ConfigResource> outputTopic : outputTopics.entrySet()) {
+                String cleanupPolicy = cleanupPolicy(configs, outputTopic.getKey(), outputTopic.getValue());
+                if (cleanupPolicy != null && cleanupPolicy.contains(TopicConfig.CLEANUP_POLICY_COMPACT)) {
+                    problems.add(String.format("output=%s has cleanup.policy=%s", outputTopic.getKey(), cleanupPolicy));
+                }
+            }
+        }
+        return problems;
+    }
+
+    private static String cleanupPolicy(Map<ConfigResource, KafkaFuture<Config>> configs, String topic, ConfigResource resource) {
+        try {
+            ConfigEntry entry = configs.get(resource).get(30, TimeUnit.SECONDS).get(TopicConfig.CLEANUP_POLICY_CONFIG);
+            return entry == null ? null : entry.value();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Skipping delta topic check for topic '{}': {}", topic, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
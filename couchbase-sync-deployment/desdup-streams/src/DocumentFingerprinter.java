@@ -0,0 +1,95 @@
+package com.path.stream.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * DocumentFingerprinter applies the fingerprint mode configured for one
+ * topic mapping: either the raw document bytes are hashed, or the document is
+ * hashed in canonical JSON form (see {@link CanonicalJsonFingerprinter}).
+ * Documents that cannot be parsed in canonical mode fall back to a raw hash.
+ */
+public final class DocumentFingerprinter {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentFingerprinter.class);
+
+    /**
+     * How document content is turned into a fingerprint.
+     */
+    public enum Mode {
+        RAW,
+        CANONICAL
+    }
+
+    private final FingerprintEngine engine;
+    private final CanonicalJsonFingerprinter canonical;
+
+    private DocumentFingerprinter(FingerprintEngine engine, CanonicalJsonFingerprinter canonical) {
+        this.engine = engine;
+        this.canonical = canonical;
+    }
+
+    public static DocumentFingerprinter raw(FingerprintEngine engine) {
+        return new DocumentFingerprinter(engine, null);
+    }
+
+    public static DocumentFingerprinter canonical(FingerprintEngine engine, IgnoredJsonPaths ignoredPaths) {
+        return new DocumentFingerprinter(engine, new CanonicalJsonFingerprinter(engine.algorithm(), ignoredPaths));
+    }
+
+    /**
+     * Builds the fingerprinter declared for a topic mapping.
+     */
+    public static DocumentFingerprinter forMapping(FingerprintEngine engine, DedupTopicMapper.TopicMapping mapping) {
+        if (mapping.getFingerprintMode() == Mode.CANONICAL) {
+            return canonical(engine, IgnoredJsonPaths.of(mapping.getIgnorePaths()));
+        }
+        return raw(engine);
+    }
+
+    public Mode mode() {
+        return canonical == null ? Mode.RAW : Mode.CANONICAL;
+    }
+
+    public Fingerprint fingerprint(String json) {
+        return fingerprint(json, null);
+    }
+
+    /**
+     * @param members receives the top-level member hashes in canonical mode;
+     *                left empty in raw mode and for documents that are not JSON objects
+     */
+    public Fingerprint fingerprint(String json, MemberHashes.Builder members) {
+        if (canonical != null) {
+            try {
+                return canonical.fingerprint(json, members);
+            } catch (IOException e) {
+                if (members != null) {
+                    members.clear();
+                }
+                log.debug("Falling back to raw fingerprint, document is not valid JSON: {}", e.getMessage());
+            }
+        }
+        return engine.fingerprint(json);
+    }
+
+    public Fingerprint fingerprint(byte[] json) {
+        return fingerprint(json, null);
+    }
+
+    public Fingerprint fingerprint(byte[] json, MemberHashes.Builder members) {
+        if (canonical != null) {
+            try {
+                return canonical.fingerprint(json, members);
+            } catch (IOException e) {
+                if (members != null) {
+                    members.clear();
+                }
+                log.debug("Falling back to raw fingerprint, document is not valid JSON: {}", e.getMessage());
+            }
+        }
+        return engine.fingerprint(json);
+    }
+}
@@ -0,0 +1,99 @@
+package com.path.stream.app;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Fixed-size binary content fingerprint produced by {@link FingerprintEngine}.
+ * Fingerprints are compared byte-for-byte; the length depends on the
+ * {@link FingerprintAlgorithm} that produced them (16 or 32 bytes).
+ */
+public final class Fingerprint {
+
+    private final byte[] bytes;
+
+    private Fingerprint(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Wraps an already computed digest without copying it.
+     * The caller must not modify the array afterwards.
+     */
+    public static Fingerprint wrap(byte[] bytes) {
+        if (bytes == null || bytes.length < 16) {
+            throw new IllegalArgumentException("Fingerprint must be at least 16 bytes");
+        }
+        return new Fingerprint(bytes);
+    }
+
+    /**
+     * Returns the fingerprint length in bytes.
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * Returns a copy of the raw fingerprint bytes.
+     */
+    public byte[] toByteArray() {
+        return bytes.clone();
+    }
+
+    /**
+     * Returns bytes 0-7 as a big-endian long. Together with {@link #low()}
+     * this is the 128-bit prefix kept by {@link FingerprintCache}.
+     */
+    public long high() {
+        return readLong(0);
+    }
+
+    /**
+     * Returns bytes 8-15 as a big-endian long.
+     */
+    public long low() {
+        return readLong(8);
+    }
+
+    private long readLong(int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFFL);
+        }
+        return value;
+    }
+
+    /**
+     * Writes the raw fingerprint bytes into the buffer without an intermediate copy.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(bytes);
+    }
+
+    /**
+     * Compares this fingerprint against raw bytes read from a state store.
+     */
+    public boolean matches(byte[] other) {
+        return other != null && Arrays.equals(bytes, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Fingerprint)) return false;
+        return Arrays.equals(bytes, ((Fingerprint) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        // Digest bytes are uniformly distributed, the leading four are enough
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+
+    @Override
+    public String toString() {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
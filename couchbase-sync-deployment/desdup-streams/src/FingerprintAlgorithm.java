@@ -0,0 +1,43 @@
+package com.path.stream.app;
+
+/**
+ * Hash algorithms supported by {@link FingerprintEngine}.
+ * <p>
+ * SHA_256 is collision resistant and matches the digest used by earlier
+ * releases. MURMUR3_128 is a non-cryptographic 128-bit hash that is several
+ * times cheaper per byte and is sufficient to tell document versions apart.
+ */
+public enum FingerprintAlgorithm {
+
+    SHA_256(32) {
+        @Override
+        FingerprintHasher newHasher() {
+            return new FingerprintHasher.Sha256();
+        }
+    },
+
+    MURMUR3_128(16) {
+        @Override
+        FingerprintHasher newHasher() {
+            return new FingerprintHasher.Murmur3x64x128();
+        }
+    };
+
+    private final int length;
+
+    FingerprintAlgorithm(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Returns the size in bytes of fingerprints produced by this algorithm.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Creates a new, non thread-safe hasher instance.
+     */
+    abstract FingerprintHasher newHasher();
+}
@@ -0,0 +1,208 @@
+package com.path.stream.app;
+
+/**
+ * Byte-budgeted cache of recently accepted fingerprints, keyed by document key.
+ * <p>
+ * Entries live in a handful of primitive arrays (open addressing, linear
+ * probing) instead of one object graph per entry: a 64-bit hash of the key
+ * maps to the leading 128 bits of the fingerprint plus an expiry time. That is
+ * {@value #BYTES_PER_SLOT} bytes per slot, so millions of keys cost a few
+ * large arrays the garbage collector never has to trace. Eviction uses the
+ * CLOCK algorithm (second chance via a reference bit) and entries expire
+ * after a fixed TTL.
+ * <p>
+ * A key-hash collision can only cause a false duplicate if the colliding
+ * documents also share the same 128-bit fingerprint prefix. Not thread-safe;
+ * each transformer owns its own instance.
+ */
+public class FingerprintCache {
+
+    // key hash + fingerprint (2 longs) + expiry + reference bit
+    static final int BYTES_PER_SLOT = 8 + 16 + 8 + 1;
+    private static final long EMPTY = 0L;
+
+    private final long[] keys;
+    private final long[] high;
+    private final long[] low;
+    private final long[] expiresAt;
+    private final boolean[] referenced;
+    private final int mask;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private int size;
+    private int hand;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes  memory budget for the slot arrays
+     * @param ttlMillis time after which an entry is no longer returned
+     */
+    public FingerprintCache(long maxBytes, long ttlMillis) {
+        long slots = Math.max(16, maxBytes / BYTES_PER_SLOT);
+        int capacity = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        this.keys = new long[capacity];
+        this.high = new long[capacity];
+        this.low = new long[capacity];
+        this.expiresAt = new long[capacity];
+        this.referenced = new boolean[capacity];
+        this.mask = capacity - 1;
+        // Keep probe sequences short
+        this.maxEntries = capacity / 4 * 3;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * True if the key is cached with the same fingerprint and has not expired.
+     */
+    public boolean contains(String key, Fingerprint fingerprint, long now) {
+        int slot = find(hash(key));
+        if (slot < 0) {
+            misses++;
+            return false;
+        }
+        if (expiresAt[slot] <= now) {
+            removeAt(slot);
+            misses++;
+            return false;
+        }
+        if (high[slot] == fingerprint.high() && low[slot] == fingerprint.low()) {
+            referenced[slot] = true;
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    public void put(String key, Fingerprint fingerprint, long now) {
+        long keyHash = hash(key);
+        int slot = find(keyHash);
+        if (slot < 0) {
+            if (size >= maxEntries) {
+                evict(now);
+            }
+            slot = home(keyHash);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = keyHash;
+            size++;
+        }
+        high[slot] = fingerprint.high();
+        low[slot] = fingerprint.low();
+        expiresAt[slot] = now + ttlMillis;
+        referenced[slot] = true;
+    }
+
+    public void remove(String key) {
+        int slot = find(hash(key));
+        if (slot >= 0) {
+            removeAt(slot);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * CLOCK sweep: expired or unreferenced entries are evicted, referenced
+     * ones get their bit cleared and a second chance.
+     */
+    private void evict(long now) {
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) & mask;
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            if (referenced[slot] && expiresAt[slot] > now) {
+                referenced[slot] = false;
+                continue;
+            }
+            removeAt(slot);
+            evictions++;
+            return;
+        }
+    }
+
+    private int find(long keyHash) {
+        int slot = home(keyHash);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == keyHash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward-shift deletion keeps probe sequences intact without tombstones.
+     */
+    private void removeAt(int slot) {
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == EMPTY) {
+                break;
+            }
+            int home = home(keys[next]);
+            // Move the entry into the gap unless its home lies cyclically in (gap, next]
+            boolean stays = gap <= next ? (gap < home && home <= next) : (gap < home || home <= next);
+            if (!stays) {
+                keys[gap] = keys[next];
+                high[gap] = high[next];
+                low[gap] = low[next];
+                expiresAt[gap] = expiresAt[next];
+                referenced[gap] = referenced[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+        referenced[gap] = false;
+        size--;
+    }
+
+    private int home(long keyHash) {
+        return (int) keyHash & mask;
+    }
+
+    /**
+     * 64-bit FNV-1a over the key characters followed by a murmur finalizer.
+     * Zero is reserved for empty slots.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1 : h;
+    }
+}
@@ -0,0 +1,53 @@
+package com.path.stream.app;
+
+/**
+ * FingerprintEngine computes content fingerprints used for duplicate detection.
+ * <p>
+ * The engine is thread-safe: every Kafka Streams thread gets its own reusable
+ * {@link FingerprintHasher}, so no digest instance is created per record and
+ * input bytes are hashed in place instead of being copied or Base64 encoded.
+ */
+public final class FingerprintEngine {
+
+    private final FingerprintAlgorithm algorithm;
+    private final ThreadLocal<FingerprintHasher> hashers;
+
+    public FingerprintEngine(FingerprintAlgorithm algorithm) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Fingerprint algorithm is required");
+        }
+        this.algorithm = algorithm;
+        this.hashers = ThreadLocal.withInitial(algorithm::newHasher);
+    }
+
+    public FingerprintAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the calling thread's hasher, reset and ready for a new document.
+     * Callers must finish it before the thread asks for the hasher again.
+     */
+    public FingerprintHasher hasher() {
+        return hashers.get().reset();
+    }
+
+    public Fingerprint fingerprint(byte[] data) {
+        return fingerprint(data, 0, data.length);
+    }
+
+    public Fingerprint fingerprint(byte[] data, int offset, int length) {
+        FingerprintHasher hasher = hasher();
+        hasher.update(data, offset, length);
+        return hasher.finish();
+    }
+
+    /**
+     * Hashes the UTF-8 form of the given text without materializing a byte[] copy.
+     */
+    public Fingerprint fingerprint(CharSequence text) {
+        FingerprintHasher hasher = hasher();
+        hasher.update(text);
+        return hasher.finish();
+    }
+}
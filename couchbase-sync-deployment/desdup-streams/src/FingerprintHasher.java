@@ -0,0 +1,303 @@
+package com.path.stream.app;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Incremental hasher behind {@link FingerprintEngine}.
+ * <p>
+ * Instances are not thread-safe and are meant to be reused: the engine keeps
+ * one per thread and resets it before every document, so hashing a record
+ * does not allocate anything except the resulting {@link Fingerprint}.
+ */
+public abstract class FingerprintHasher {
+
+    // Scratch buffer used to encode character data to UTF-8 without allocating
+    private final byte[] utf8 = new byte[512];
+
+    /**
+     * Discards any buffered input so the hasher can start a new document.
+     */
+    public abstract FingerprintHasher reset();
+
+    public abstract void update(byte b);
+
+    public abstract void update(byte[] input, int offset, int length);
+
+    /**
+     * Completes the hash computation and resets the hasher.
+     */
+    public abstract Fingerprint finish();
+
+    /**
+     * Completes the hash computation into the given array and resets the hasher.
+     * Used where many intermediate digests are produced per document.
+     */
+    public abstract void finish(byte[] out, int offset);
+
+    public void update(byte[] input) {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Feeds the UTF-8 encoding of the given characters. The produced bytes are
+     * identical to {@code String.getBytes(StandardCharsets.UTF_8)}, so a String
+     * and its encoded form always hash to the same fingerprint.
+     */
+    public void update(CharSequence chars) {
+        encode(chars, null, 0, chars.length());
+    }
+
+    /**
+     * Same as {@link #update(CharSequence)} for a region of a character array,
+     * e.g. the text buffer of a streaming JSON parser.
+     */
+    public void update(char[] chars, int offset, int length) {
+        encode(null, chars, offset, length);
+    }
+
+    private void encode(CharSequence sequence, char[] array, int offset, int len) {
+        byte[] buf = utf8;
+        int pos = 0;
+        for (int i = 0; i < len; i++) {
+            if (pos > buf.length - 4) {
+                update(buf, 0, pos);
+                pos = 0;
+            }
+            char c = array != null ? array[offset + i] : sequence.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                int cp = -1;
+                char next = i + 1 < len ? (array != null ? array[offset + i + 1] : sequence.charAt(i + 1)) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(next)) {
+                    cp = Character.toCodePoint(c, next);
+                    i++;
+                }
+                if (cp < 0) {
+                    // Unpaired surrogate, encoded as '?' like the JDK encoder does
+                    buf[pos++] = (byte) '?';
+                } else {
+                    buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+                }
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        if (pos > 0) {
+            update(buf, 0, pos);
+        }
+    }
+
+    /**
+     * SHA-256 backed by a single reusable {@link MessageDigest}.
+     */
+    static final class Sha256 extends FingerprintHasher {
+
+        private final MessageDigest digest;
+
+        Sha256() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available in this JVM", e);
+            }
+        }
+
+        @Override
+        public FingerprintHasher reset() {
+            digest.reset();
+            return this;
+        }
+
+        @Override
+        public void update(byte b) {
+            digest.update(b);
+        }
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            digest.update(input, offset, length);
+        }
+
+        @Override
+        public Fingerprint finish() {
+            return Fingerprint.wrap(digest.digest());
+        }
+
+        @Override
+        public void finish(byte[] out, int offset) {
+            try {
+                digest.digest(out, offset, digest.getDigestLength());
+            } catch (DigestException e) {
+                throw new IllegalArgumentException("Output buffer too small for SHA-256 digest", e);
+            }
+        }
+    }
+
+    /**
+     * Streaming MurmurHash3 x64 128-bit variant (seed 0). Output bytes are h1
+     * followed by h2, both little-endian, which matches the reference and
+     * Guava implementations.
+     */
+    static final class Murmur3x64x128 extends FingerprintHasher {
+
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] block = new byte[16];
+        private int blockLength;
+        private long totalLength;
+        private long h1;
+        private long h2;
+
+        @Override
+        public FingerprintHasher reset() {
+            blockLength = 0;
+            totalLength = 0;
+            h1 = 0;
+            h2 = 0;
+            return this;
+        }
+
+        @Override
+        public void update(byte b) {
+            block[blockLength++] = b;
+            totalLength++;
+            if (blockLength == 16) {
+                mix(block, 0);
+                blockLength = 0;
+            }
+        }
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            int end = offset + length;
+            totalLength += length;
+
+            // Complete a partially filled block first
+            if (blockLength > 0) {
+                int n = Math.min(16 - blockLength, length);
+                System.arraycopy(input, offset, block, blockLength, n);
+                blockLength += n;
+                offset += n;
+                if (blockLength < 16) {
+                    return;
+                }
+                mix(block, 0);
+                blockLength = 0;
+            }
+
+            // Hash full blocks straight from the input
+            while (end - offset >= 16) {
+                mix(input, offset);
+                offset += 16;
+            }
+
+            if (offset < end) {
+                System.arraycopy(input, offset, block, 0, end - offset);
+                blockLength = end - offset;
+            }
+        }
+
+        @Override
+        public Fingerprint finish() {
+            byte[] out = new byte[16];
+            finish(out, 0);
+            return Fingerprint.wrap(out);
+        }
+
+        @Override
+        public void finish(byte[] out, int offset) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = blockLength - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (block[i] & 0xFFL);
+            }
+            for (int i = Math.min(blockLength, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (block[i] & 0xFFL);
+            }
+            if (blockLength > 8) {
+                k2 *= C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= C1;
+                h2 ^= k2;
+            }
+            if (blockLength > 0) {
+                k1 *= C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                h1 ^= k1;
+            }
+
+            h1 ^= totalLength;
+            h2 ^= totalLength;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+
+            putLongLE(out, offset, h1);
+            putLongLE(out, offset + 8, h2);
+            reset();
+        }
+
+        private void mix(byte[] data, int offset) {
+            long k1 = getLongLE(data, offset);
+            long k2 = getLongLE(data, offset + 8);
+
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long getLongLE(byte[] b, int i) {
+            return (b[i] & 0xFFL)
+                    | (b[i + 1] & 0xFFL) << 8
+                    | (b[i + 2] & 0xFFL) << 16
+                    | (b[i + 3] & 0xFFL) << 24
+                    | (b[i + 4] & 0xFFL) << 32
+                    | (b[i + 5] & 0xFFL) << 40
+                    | (b[i + 6] & 0xFFL) << 48
+                    | (b[i + 7] & 0xFFL) << 56;
+        }
+
+        private static void putLongLE(byte[] b, int i, long v) {
+            for (int j = 0; j < 8; j++) {
+                b[i + j] = (byte) (v >>> (8 * j));
+            }
+        }
+    }
+}
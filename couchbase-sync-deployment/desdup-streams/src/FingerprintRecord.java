@@ -0,0 +1,122 @@
+package com.path.stream.app;
+
+/**
+ * Compact dedup state kept per document key: the content fingerprint of the
+ * last accepted version, how many versions were accepted so far, and the
+ * wall-clock time at which that version was accepted. Retention is measured
+ * from that time, so replays of old records do not expire immediately.
+ * <p>
+ * Records are published to a compacted fingerprint topic next to each output
+ * topic and materialized as the global dedup store, so instances never hold
+ * full copies of the output documents.
+ * <p>
+ * Mappings that emit deltas also keep the {@link MemberHashes} of the last
+ * accepted version, so the next version can be compared member by member.
+ * Mappings with a {@link SourceVersion} keep the source version (CAS or
+ * revision) of the last accepted record.
+ */
+public final class FingerprintRecord {
+
+    private final Fingerprint fingerprint;
+    private final long revision;
+    private final long timestamp;
+    private final MemberHashes members;
+    private final long version;
+
+    public FingerprintRecord(Fingerprint fingerprint, long revision, long timestamp) {
+        this(fingerprint, revision, timestamp, null);
+    }
+
+    /**
+     * @param members top-level member hashes, or null when the mapping does not emit deltas
+     */
+    public FingerprintRecord(Fingerprint fingerprint, long revision, long timestamp, MemberHashes members) {
+        this(fingerprint, revision, timestamp, members, SourceVersion.NONE);
+    }
+
+    /**
+     * @param version source version of the record, or {@link SourceVersion#NONE}
+     */
+    public FingerprintRecord(Fingerprint fingerprint, long revision, long timestamp, MemberHashes members, long version) {
+        if (fingerprint == null) {
+            throw new IllegalArgumentException("Fingerprint is required");
+        }
+        this.fingerprint = fingerprint;
+        this.revision = revision;
+        this.timestamp = timestamp;
+        this.members = members;
+        this.version = version;
+    }
+
+    public Fingerprint fingerprint() {
+        return fingerprint;
+    }
+
+    public long revision() {
+        return revision;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the top-level member hashes, or null
+     */
+    public MemberHashes members() {
+        return members;
+    }
+
+    /**
+     * @return the source version, or {@link SourceVersion#NONE}
+     */
+    public long version() {
+        return version;
+    }
+
+    public boolean hasVersion() {
+        return version != SourceVersion.NONE;
+    }
+
+    /**
+     * True if this record holds a source version at least as new as the given one.
+     */
+    public boolean supersedes(long version) {
+        return hasVersion() && version != SourceVersion.NONE && this.version >= version;
+    }
+
+    /**
+     * Copy carrying the source version of the accepted record.
+     */
+    public FingerprintRecord withVersion(long version) {
+        return version == this.version ? this : new FingerprintRecord(fingerprint, revision, timestamp, members, version);
+    }
+
+    /**
+     * Builds the record for the next accepted version of a document.
+     */
+    public static FingerprintRecord next(FingerprintRecord previous, Fingerprint fingerprint, long timestamp) {
+        return next(previous, fingerprint, null, timestamp);
+    }
+
+    public static FingerprintRecord next(FingerprintRecord previous, Fingerprint fingerprint, MemberHashes members,
+                                         long timestamp) {
+        long revision = previous == null ? 1 : previous.revision + 1;
+        return new FingerprintRecord(fingerprint, revision, timestamp, members);
+    }
+
+    /**
+     * True if the record is older than the retention at the given time.
+     * A zero or negative retention never expires.
+     */
+    public boolean isExpired(long retentionMs, long now) {
+        return retentionMs > 0 && timestamp < now - retentionMs;
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintRecord{fingerprint=" + fingerprint + ", revision=" + revision + ", timestamp=" + timestamp
+                + (members != null ? ", members=" + members.size() : "")
+                + (hasVersion() ? ", version=" + version : "") + "}";
+    }
+}
@@ -0,0 +1,95 @@
+package com.path.stream.app;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary serde for {@link FingerprintRecord}.
+ * <p>
+ * Layout: format version (1 byte), fingerprint length (1 byte), fingerprint
+ * bytes, revision (8 bytes), timestamp (8 bytes). A 32-byte SHA-256 record is
+ * therefore 50 bytes on the wire and in RocksDB.
+ * <p>
+ * Records with {@link MemberHashes} use format version 2, which appends the
+ * member count (4 bytes) and 16 bytes per member. Records with a source
+ * version use format version 3, which appends the version (8 bytes) and then
+ * optionally the member hashes as in version 2. Records without either are
+ * still written as version 1, so mappings that use neither stay readable by
+ * earlier releases.
+ */
+public class FingerprintRecordSerde extends Serdes.WrapperSerde<FingerprintRecord> {
+
+    static final byte FORMAT_VERSION = 1;
+    static final byte FORMAT_VERSION_MEMBERS = 2;
+    static final byte FORMAT_VERSION_SOURCE = 3;
+
+    public FingerprintRecordSerde() {
+        super(new FingerprintRecordSerializer(), new FingerprintRecordDeserializer());
+    }
+
+    public static class FingerprintRecordSerializer implements Serializer<FingerprintRecord> {
+        @Override
+        public byte[] serialize(String topic, FingerprintRecord record) {
+            if (record == null) {
+                return null;
+            }
+            Fingerprint fingerprint = record.fingerprint();
+            MemberHashes members = record.members();
+            ByteBuffer buffer = ByteBuffer.allocate(2 + fingerprint.length() + 16
+                    + (record.hasVersion() ? 8 : 0)
+                    + (members != null ? members.serializedSize() : 0));
+            buffer.put(record.hasVersion() ? FORMAT_VERSION_SOURCE : members != null ? FORMAT_VERSION_MEMBERS : FORMAT_VERSION);
+            buffer.put((byte) fingerprint.length());
+            fingerprint.writeTo(buffer);
+            buffer.putLong(record.revision());
+            buffer.putLong(record.timestamp());
+            if (record.hasVersion()) {
+                buffer.putLong(record.version());
+            }
+            if (members != null) {
+                members.writeTo(buffer);
+            }
+            return buffer.array();
+        }
+    }
+
+    public static class FingerprintRecordDeserializer implements Deserializer<FingerprintRecord> {
+        @Override
+        public FingerprintRecord deserialize(String topic, byte[] data) {
+            if (data == null) {
+                return null;
+            }
+            if (data.length < 2 || data[0] < FORMAT_VERSION || data[0] > FORMAT_VERSION_SOURCE) {
+                throw new SerializationException("Unsupported fingerprint record format on topic " + topic);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte format = buffer.get();
+            int length = buffer.get() & 0xFF;
+            int fixed = length + 16 + (format == FORMAT_VERSION_SOURCE ? 8 : 0);
+            boolean corrupt = format == FORMAT_VERSION_MEMBERS ? buffer.remaining() < fixed + Integer.BYTES
+                    : format == FORMAT_VERSION_SOURCE ? buffer.remaining() < fixed
+                    : buffer.remaining() != fixed;
+            if (corrupt) {
+                throw new SerializationException("Corrupt fingerprint record on topic " + topic);
+            }
+            byte[] fingerprint = new byte[length];
+            buffer.get(fingerprint);
+            long revision = buffer.getLong();
+            long timestamp = buffer.getLong();
+            long version = format == FORMAT_VERSION_SOURCE ? buffer.getLong() : SourceVersion.NONE;
+            MemberHashes members = null;
+            if (buffer.hasRemaining()) {
+                try {
+                    members = MemberHashes.readFrom(buffer);
+                } catch (IllegalArgumentException e) {
+                    throw new SerializationException("Corrupt fingerprint record on topic " + topic);
+                }
+            }
+            return new FingerprintRecord(Fingerprint.wrap(fingerprint), revision, timestamp, members, version);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.path.stream.app;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Incrementally deletes fingerprint records older than the retention from a
+ * partition-local dedup store. Each call to {@link #sweep(long)} scans a
+ * bounded number of entries and remembers where it stopped, so a full pass
+ * over a large store is spread over many punctuations instead of blocking
+ * the stream thread. Deletes go through the store and therefore also write
+ * tombstones to its changelog.
+ * <p>
+ * A global fingerprint store has no changelog: {@link #timestamped} only
+ * deletes the local copy, and the fingerprint topic is trimmed by its own
+ * time-based retention.
+ */
+public class FingerprintStoreSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(FingerprintStoreSweeper.class);
+
+    private final KeyValueStore<String, ?> store;
+    private final Function<Object, FingerprintRecord> records;
+    private final ToLongFunction<String> retentionMs;
+    private final int maxEntriesPerSweep;
+    // Key to resume from; null starts a new pass from the beginning of the store
+    private String cursor;
+
+    public FingerprintStoreSweeper(KeyValueStore<String, FingerprintRecord> store, long retentionMs, int maxEntriesPerSweep) {
+        this(store, key -> retentionMs, maxEntriesPerSweep);
+    }
+
+    /**
+     * @param retentionMs retention of each key, for stores shared by topics with different retentions
+     */
+    public FingerprintStoreSweeper(KeyValueStore<String, FingerprintRecord> store, ToLongFunction<String> retentionMs,
+                                   int maxEntriesPerSweep) {
+        this(store, value -> (FingerprintRecord) value, retentionMs, maxEntriesPerSweep);
+    }
+
+    private FingerprintStoreSweeper(KeyValueStore<String, ?> store, Function<Object, FingerprintRecord> records,
+                                    ToLongFunction<String> retentionMs, int maxEntriesPerSweep) {
+        this.store = store;
+        this.records = records;
+        this.retentionMs = retentionMs;
+        this.maxEntriesPerSweep = maxEntriesPerSweep;
+    }
+
+    /**
+     * Sweeper of a global fingerprint store, which holds each record with its timestamp.
+     */
+    public static FingerprintStoreSweeper timestamped(TimestampedKeyValueStore<String, FingerprintRecord> store,
+                                                      long retentionMs, int maxEntriesPerSweep) {
+        return new FingerprintStoreSweeper(store, FingerprintStoreSweeper::unwrap, key -> retentionMs, maxEntriesPerSweep);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FingerprintRecord unwrap(Object value) {
+        return value == null ? null : ((ValueAndTimestamp<FingerprintRecord>) value).value();
+    }
+
+    /**
+     * Sweeps the whole store in one go, e.g. after it was restored.
+     *
+     * @return number of expired entries deleted
+     */
+    public int sweepAll(long now) {
+        int expired = 0;
+        do {
+            expired += sweep(now);
+        } while (cursor != null);
+        return expired;
+    }
+
+    /**
+     * @return number of expired entries deleted
+     */
+    public int sweep(long now) {
+        List<String> expired = new ArrayList<>();
+        int scanned = 0;
+        String last = null;
+        boolean exhausted;
+
+        try (KeyValueIterator<String, ?> it = cursor == null ? store.all() : store.range(cursor, null)) {
+            while (it.hasNext() && scanned < maxEntriesPerSweep) {
+                KeyValue<String, ?> entry = it.next();
+                scanned++;
+                last = entry.key;
+                FingerprintRecord record = records.apply(entry.value);
+                if (record != null && record.isExpired(retentionMs.applyAsLong(entry.key), now)) {
+                    expired.add(entry.key);
+                }
+            }
+            exhausted = !it.hasNext();
+        }
+
+        // Delete after the iterator is closed so stores without snapshot iterators are safe too
+        for (String key : expired) {
+            store.delete(key);
+        }
+        cursor = exhausted ? null : last;
+
+        if (!expired.isEmpty()) {
+            log.debug("Expired {} of {} scanned fingerprints in store '{}'", expired.size(), scanned, store.name());
+        }
+        return expired.size();
+    }
+}
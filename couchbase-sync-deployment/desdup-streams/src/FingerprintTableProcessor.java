@@ -0,0 +1,104 @@
+package com.path.stream.app;
+
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains a global fingerprint store from its fingerprint topic, the same
+ * way a GlobalKTable would, keeps the store's {@link KeyBloomFilter} in step
+ * with it, retires the {@link InFlightOverlay} entries the store has
+ * caught up with and records what it applies in {@link RecentFingerprints}.
+ * <p>
+ * Global state restoration writes straight into the store without passing
+ * through this processor, so {@link #init} rebuilds the filter and collects
+ * the recent fingerprints from the restored store. It runs on the global thread before any stream thread
+ * starts processing.
+ * <p>
+ * With a retention, {@link #init} also deletes the restored records that
+ * have expired, and {@link #process} sweeps the store incrementally every
+ * {@code dedup.expiry.interval}. Segment deletion of the fingerprint topic
+ * writes no tombstones, so without this a store restored from its
+ * checkpoint would keep every expired key.
+ */
+public class FingerprintTableProcessor implements Processor<String, FingerprintRecord, Void, Void> {
+
+    private static final Logger log = LoggerFactory.getLogger(FingerprintTableProcessor.class);
+
+    private final String storeName;
+    private final KeyBloomFilter filter;
+    private final InFlightOverlay overlay;
+    private final RecentFingerprints recent;
+    private final long retentionMs;
+    private final DedupProperties.Expiry expiry;
+    private TimestampedKeyValueStore<String, FingerprintRecord> store;
+    private ProcessorContext<Void, Void> context;
+    private FingerprintStoreSweeper sweeper;
+    private long nextSweepMs;
+
+    /**
+     * Maintains the key filter, overlay and recent fingerprints of the
+     * settings, those that are set, and expires records past the settings'
+     * retention.
+     */
+    public FingerprintTableProcessor(String storeName, DedupSettings<?> settings) {
+        this.storeName = storeName;
+        this.filter = settings.keyFilter();
+        this.overlay = settings.overlay();
+        this.recent = settings.recent();
+        this.retentionMs = settings.retention().toMillis();
+        this.expiry = settings.expiry();
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        this.context = context;
+        this.store = context.getStateStore(storeName);
+        if (retentionMs > 0) {
+            // Global processors cannot schedule punctuations, so sweeps are driven by process()
+            this.sweeper = FingerprintStoreSweeper.timestamped(store, retentionMs, expiry.getMaxEntriesPerSweep());
+            long now = context.currentSystemTimeMs();
+            int expired = sweeper.sweepAll(now);
+            this.nextSweepMs = now + expiry.getInterval().toMillis();
+            log.info("Deleted {} expired fingerprints from store '{}'", expired, storeName);
+        }
+        if (filter != null) {
+            filter.rebuild(store.all(), store.approximateNumEntries());
+            log.info("Key filter for store '{}' rebuilt: {} bytes, estimated false-positive rate {}",
+                    storeName, filter.sizeInBytes(), filter.estimatedFalsePositiveRate());
+        }
+        if (recent != null) {
+            recent.collect(store.all(), context.currentSystemTimeMs());
+            log.info("Collected {} recent fingerprints of store '{}' for cache pre-warming", recent.size(), storeName);
+        }
+    }
+
+    @Override
+    public void process(Record<String, FingerprintRecord> record) {
+        if (record.key() == null) {
+            return;
+        }
+        if (record.value() == null) {
+            store.delete(record.key());
+        } else {
+            store.put(record.key(), ValueAndTimestamp.make(record.value(), record.timestamp()));
+            if (filter != null) {
+                filter.put(record.key());
+            }
+        }
+        if (overlay != null) {
+            overlay.retire(record.key(), record.value());
+        }
+        if (recent != null) {
+            recent.add(record.key(), record.value());
+        }
+        if (sweeper != null && context.currentSystemTimeMs() >= nextSweepMs) {
+            sweeper.sweep(context.currentSystemTimeMs());
+            nextSweepMs = context.currentSystemTimeMs() + expiry.getInterval().toMillis();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.path.stream.app;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes sure the fingerprint topic of a pattern-matched input topic is
+ * compacted, the first time the consolidated topology routes a record of
+ * that input topic.
+ * <p>
+ * Unlike the fingerprint topics of mapped input topics, these are not
+ * declared at startup. A topic auto-created by the producer would get the
+ * broker's default {@code cleanup.policy=delete}, so its fingerprints would
+ * age out and it could not seed the global or partitioned mode. A missing
+ * topic is therefore created compacted before the first record is sent to
+ * it, and an existing topic that is not compacted is reported as an error.
+ */
+public class FingerprintTopicValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(FingerprintTopicValidator.class);
+
+    private final Map<String, Object> adminConfig;
+
+    public FingerprintTopicValidator(Map<String, Object> adminConfig) {
+        this.adminConfig = adminConfig;
+    }
+
+    /**
+     * Creates the topic compacted if it does not exist, and logs an error if
+     * it exists with another cleanup policy. Never throws, so a broker that
+     * cannot be reached does not stop the stream thread.
+     */
+    public void ensureCompacted(String topic) {
+        ConfigResource resource = new ConfigResource(ConfigResource.Type.TOPIC, topic);
+        try (AdminClient admin = AdminClient.create(adminConfig)) {
+            String cleanupPolicy = cleanupPolicy(admin, resource);
+            if (cleanupPolicy == null) {
+                create(admin, topic);
+            } else if (!cleanupPolicy.contains(TopicConfig.CLEANUP_POLICY_COMPACT)) {
+                log.error("Fingerprint topic '{}' has cleanup.policy={}: its fingerprints will age out and it cannot seed "
+                        + "global or partitioned mode. Set cleanup.policy=compact on it.", topic, cleanupPolicy);
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Skipping fingerprint topic check for topic '{}': {}", topic, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the topic's cleanup policy, or null if the topic does not exist
+     */
+    private static String cleanupPolicy(AdminClient admin, ConfigResource resource)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        try {
+            Config config = admin.describeConfigs(Collections.singleton(resource)).all()
+                    .get(30, TimeUnit.SECONDS).get(resource);
+            ConfigEntry entry = config == null ? null : config.get(TopicConfig.CLEANUP_POLICY_CONFIG);
+            return entry == null ? TopicConfig.CLEANUP_POLICY_DELETE : entry.value();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownTopicOrPartitionException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static void create(AdminClient admin, String topic)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        NewTopic newTopic = new NewTopic(topic, Optional.empty(), Optional.empty())
+                .configs(Collections.singletonMap(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+        try {
+            admin.createTopics(Collections.singleton(newTopic)).all().get(30, TimeUnit.SECONDS);
+            log.info("Created compacted fingerprint topic '{}'", topic);
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TopicExistsException)) {
+                throw e;
+            }
+        }
+    }
+}
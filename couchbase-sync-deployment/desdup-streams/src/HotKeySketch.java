@@ -0,0 +1,45 @@
+package com.path.stream.app;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch of updates per key over the current second, used by
+ * {@link UpdateCoalescer} to spot keys that change faster than the hot-key
+ * rate without keeping a counter per key.
+ * <p>
+ * Counts are overestimated when keys collide, never underestimated, so a hot
+ * key is always detected and a cold one is buffered only by chance. With 4
+ * rows of 2048 counters the sketch takes 32 KiB per task. It is reset at the
+ * start of every second and is not thread-safe.
+ */
+public final class HotKeySketch {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 2048;
+    private static final long PERIOD_MS = 1000;
+
+    private final int[][] counts = new int[DEPTH][WIDTH];
+    private long periodStart;
+
+    /**
+     * Counts one update of the key.
+     *
+     * @return the estimated number of updates of the key in the current second
+     */
+    public int add(String key, long now) {
+        if (now - periodStart >= PERIOD_MS || now < periodStart) {
+            for (int[] row : counts) {
+                Arrays.fill(row, 0);
+            }
+            periodStart = now;
+        }
+        long h1 = FingerprintCache.hash(key);
+        long h2 = (h1 >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = (int) ((h1 + row * h2) & (WIDTH - 1));
+            estimate = Math.min(estimate, ++counts[row][index]);
+        }
+        return estimate;
+    }
+}
@@ -0,0 +1,95 @@
+package com.path.stream.app;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set of JSON member paths excluded from canonical fingerprints, e.g.
+ * {@code _sync}, {@code meta.lastModified} or {@code items.*.updatedAt}.
+ * <p>
+ * Paths are dot separated member names; {@code *} matches any single member
+ * name. Arrays are transparent, so {@code items.updatedAt} also matches the
+ * member of every object inside an {@code items} array.
+ */
+public final class IgnoredJsonPaths {
+
+    public static final IgnoredJsonPaths NONE = new IgnoredJsonPaths(new Node());
+
+    private final Node root;
+
+    private IgnoredJsonPaths(Node root) {
+        this.root = root;
+    }
+
+    public static IgnoredJsonPaths of(Collection<String> paths) {
+        if (paths == null || paths.isEmpty()) {
+            return NONE;
+        }
+        Node root = new Node();
+        for (String path : paths) {
+            String trimmed = path.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (String segment : trimmed.split("\\.")) {
+                if (segment.isEmpty()) {
+                    throw new IllegalArgumentException("Invalid ignored JSON path: " + path);
+                }
+                node = node.child(segment);
+            }
+            node.terminal = true;
+        }
+        return new IgnoredJsonPaths(root);
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty() && root.wildcard == null;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    /**
+     * Collects the nodes reached from {@code parents} through the member
+     * {@code name} into {@code out}.
+     *
+     * @return true if the member itself is ignored
+     */
+    static boolean descend(List<Node> parents, String name, List<Node> out) {
+        out.clear();
+        boolean ignored = false;
+        for (int i = 0; i < parents.size(); i++) {
+            Node parent = parents.get(i);
+            Node exact = parent.children.get(name);
+            if (exact != null) {
+                ignored |= exact.terminal;
+                out.add(exact);
+            }
+            if (parent.wildcard != null) {
+                ignored |= parent.wildcard.terminal;
+                out.add(parent.wildcard);
+            }
+        }
+        return ignored;
+    }
+
+    static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Node wildcard;
+        private boolean terminal;
+
+        private Node child(String segment) {
+            if ("*".equals(segment)) {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                return wildcard;
+            }
+            return children.computeIfAbsent(segment, s -> new Node());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fingerprint records this instance emitted that its global fingerprint
+ * store has not applied yet.
+ * <p>
+ * The global store only learns about an accepted record once the record has
+ * gone through the fingerprint topic and the global thread. Until then the
+ * transformer consults this overlay, which holds the emitted record and
+ * takes precedence over the store. An entry is retired as soon as
+ * {@link FingerprintTableProcessor} applies the same or a later revision of
+ * its key, and ignored {@code maxAge} after it was added in case that never
+ * happens.
+ * <p>
+ * The overlay is shared by all stream threads of the instance that read the
+ * same store. It never holds more than {@code maxEntries} entries: when it is
+ * full, expired entries are dropped and, if that is not enough, new entries
+ * are not added (the local cache and the store still apply).
+ * <p>
+ * A delete leaves a marker (see {@link #putDeleted}) until the store has
+ * applied the tombstone, so that a re-created document is not compared with
+ * the deleted version still in the store.
+ */
+public class InFlightOverlay {
+
+    // Identity marks deletion markers; never serialized
+    private static final Fingerprint DELETED = Fingerprint.wrap(new byte[16]);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxEntries;
+    private final long maxAgeMs;
+    private volatile long nextPurge;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder retired = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    public InFlightOverlay(DedupProperties.Overlay settings) {
+        this.maxEntries = settings.getMaxEntries();
+        this.maxAgeMs = settings.getMaxAge().toMillis();
+    }
+
+    /**
+     * @return the record emitted for the key that the store has not applied
+     * yet, or null
+     */
+    public FingerprintRecord get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now - entry.addedAt > maxAgeMs) {
+            if (entries.remove(key, entry)) {
+                size.decrementAndGet();
+                expired.increment();
+            }
+            return null;
+        }
+        return entry.record;
+    }
+
+    /**
+     * Records an emitted fingerprint record; called after the record was
+     * forwarded to the fingerprint topic.
+     */
+    public void put(String key, FingerprintRecord record, long now) {
+        if (size.get() >= maxEntries && !entries.containsKey(key) && purge(now) == 0) {
+            overflows.increment();
+            return;
+        }
+        if (entries.put(key, new Entry(record, now)) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a forwarded delete of the key.
+     */
+    public void putDeleted(String key, long now) {
+        put(key, new FingerprintRecord(DELETED, 0, now), now);
+    }
+
+    /**
+     * True if the entry returned by {@link #get} marks a delete the store has not applied yet.
+     */
+    public static boolean isDeleted(FingerprintRecord record) {
+        return record != null && record.fingerprint() == DELETED;
+    }
+
+    /**
+     * Retires the key's entry once the store holds its revision or a later
+     * one; a null record (tombstone) retires a deletion marker only, since a
+     * re-created record may already have replaced it.
+     */
+    public void retire(String key, FingerprintRecord applied) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        FingerprintRecord record = entry.record;
+        boolean caughtUp = applied == null ? isDeleted(record)
+                : !isDeleted(record) && (applied.revision() >= record.revision()
+                || applied.fingerprint().equals(record.fingerprint()));
+        if (caughtUp && entries.remove(key, entry)) {
+            size.decrementAndGet();
+            retired.increment();
+        }
+    }
+
+    /**
+     * A duplicate was rejected because of an entry the store did not have yet.
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * A changed record was compared with an entry instead of the older
+     * version in the store.
+     */
+    public void recordSuperseded() {
+        superseded.increment();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Drops expired entries, at most once per second so that a full overlay
+     * is not scanned on every put.
+     */
+    private int purge(long now) {
+        if (now < nextPurge) {
+            return 0;
+        }
+        nextPurge = now + 1000;
+        int removed = 0;
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (now - entry.getValue().addedAt > maxAgeMs && entries.remove(entry.getKey(), entry.getValue())) {
+                size.decrementAndGet();
+                expired.increment();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Registers the overlay meters; the caller removes them when the store goes away.
+     */
+    public List<Meter> bindTo(MeterRegistry registry, Tags tags) {
+        return Arrays.asList(
+                Gauge.builder("dedup.overlay.size", this, InFlightOverlay::size)
+                        .tags(tags)
+                        .description("Emitted fingerprints not yet applied to the global store")
+                        .register(registry),
+                FunctionCounter.builder("dedup.overlay.decisions", rejected, LongAdder::sum)
+                        .tags(tags).tag("outcome", "rejected")
+                        .description("Duplicates caught by the overlay that the store would have accepted")
+                        .register(registry),
+                FunctionCounter.builder("dedup.overlay.decisions", superseded, LongAdder::sum)
+                        .tags(tags).tag("outcome", "superseded")
+                        .description("Changed records compared with the overlay instead of an outdated store entry")
+                        .register(registry),
+                FunctionCounter.builder("dedup.overlay.removed", retired, LongAdder::sum)
+                        .tags(tags).tag("reason", "retired")
+                        .description("Entries removed from the overlay")
+                        .register(registry),
+                FunctionCounter.builder("dedup.overlay.removed", expired, LongAdder::sum)
+                        .tags(tags).tag("reason", "expired")
+                        .description("Entries removed from the overlay")
+                        .register(registry),
+                FunctionCounter.builder("dedup.overlay.overflows", overflows, LongAdder::sum)
+                        .tags(tags)
+                        .description("Emitted fingerprints not added because the overlay was full")
+                        .register(registry));
+    }
+
+    /**
+     * An emitted record and when it was added. The age is not taken from
+     * the record, whose timestamp is that of the accepted content and may be
+     * older for a record that only carries a newer source version.
+     */
+    private static final class Entry {
+        final FingerprintRecord record;
+        final long addedAt;
+
+        Entry(FingerprintRecord record, long addedAt) {
+            this.record = record;
+            this.addedAt = addedAt;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory Bloom filter over the keys of a fingerprint store.
+ * <p>
+ * Most new documents have never been seen, and for them a store lookup is a
+ * guaranteed miss that still costs a RocksDB point read. When
+ * {@link #mightContain(String)} returns false the key is definitely not in the
+ * store and the read can be skipped.
+ * <p>
+ * The filter is rebuilt from the store whenever the store has been restored
+ * (see {@link #rebuild(KeyValueIterator, long)}) and every key written to the
+ * store must be {@link #put(String) put} into it. Deleted or expired keys are
+ * not removed, they only add to the false-positive rate until the next
+ * rebuild. Bits are set with CAS so one writer and any number of readers may
+ * share an instance, which is how the global mode uses it.
+ */
+public class KeyBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+    private volatile Bits bits;
+
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * @param expectedKeys      keys the filter is sized for before the first rebuild
+     * @param falsePositiveRate target false-positive probability at that size
+     */
+    public KeyBloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        this.expectedKeys = Math.max(1, expectedKeys);
+        this.falsePositiveRate = falsePositiveRate;
+        this.bits = new Bits(this.expectedKeys, falsePositiveRate);
+    }
+
+    public KeyBloomFilter(DedupProperties.Filter settings) {
+        this(settings.getExpectedKeys(), settings.getFalsePositiveRate());
+    }
+
+    /**
+     * False means the key was never put; true means it probably was.
+     */
+    public boolean mightContain(String key) {
+        Bits current = bits;
+        long h1 = FingerprintCache.hash(key);
+        long h2 = mix(h1);
+        for (int i = 0; i < current.numHashes; i++) {
+            if (!current.get(index(h1, h2, i, current.numBits))) {
+                negatives.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(String key) {
+        Bits current = bits;
+        long h1 = FingerprintCache.hash(key);
+        long h2 = mix(h1);
+        for (int i = 0; i < current.numHashes; i++) {
+            current.set(index(h1, h2, i, current.numBits));
+        }
+    }
+
+    /**
+     * Replaces the filter contents with the given keys. The new bit set is
+     * sized for at least twice the store's current entry count and published
+     * only once it is complete, so concurrent readers never see a partial
+     * filter. Closes the iterator.
+     */
+    public void rebuild(KeyValueIterator<String, ?> keys, long approximateEntries) {
+        Bits rebuilt = new Bits(Math.max(expectedKeys, approximateEntries * 2), falsePositiveRate);
+        try {
+            while (keys.hasNext()) {
+                KeyValue<String, ?> entry = keys.next();
+                long h1 = FingerprintCache.hash(entry.key);
+                long h2 = mix(h1);
+                for (int i = 0; i < rebuilt.numHashes; i++) {
+                    rebuilt.set(index(h1, h2, i, rebuilt.numBits));
+                }
+            }
+        } finally {
+            keys.close();
+        }
+        this.bits = rebuilt;
+    }
+
+    /**
+     * Called when {@link #mightContain(String)} said yes but the store had
+     * no entry for the key.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Share of lookups for absent keys that still reached the store.
+     */
+    public double observedFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long total = fp + negatives.sum();
+        return total == 0 ? 0 : (double) fp / total;
+    }
+
+    /**
+     * Expected false-positive probability for the current fill ratio.
+     */
+    public double estimatedFalsePositiveRate() {
+        Bits current = bits;
+        return Math.pow((double) current.setBits.get() / current.numBits, current.numHashes);
+    }
+
+    public long sizeInBytes() {
+        return bits.words.length() * 8L;
+    }
+
+    /**
+     * Registers the estimated and observed false-positive rates as gauges.
+     *
+     * @return the registered meters, to be removed when the owner closes
+     */
+    public List<Meter> bindTo(MeterRegistry registry, Tags tags) {
+        return Arrays.asList(
+                Gauge.builder("dedup.filter.false.positive.rate", this, KeyBloomFilter::estimatedFalsePositiveRate)
+                        .tags(tags).tag("source", "estimated")
+                        .description("Expected false-positive probability from the filter fill ratio")
+                        .register(registry),
+                Gauge.builder("dedup.filter.false.positive.rate", this, KeyBloomFilter::observedFalsePositiveRate)
+                        .tags(tags).tag("source", "observed")
+                        .description("Share of lookups for absent keys that were not filtered out")
+                        .register(registry),
+                Gauge.builder("dedup.filter.size", this, KeyBloomFilter::sizeInBytes)
+                        .tags(tags)
+                        .baseUnit("bytes")
+                        .register(registry));
+    }
+
+    // Kirsch-Mitzenmacher: the i-th index is h1 + i * h2
+    private static long index(long h1, long h2, int i, long numBits) {
+        return ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+    }
+
+    private static long mix(long h) {
+        h ^= 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h | 1;
+    }
+
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long numBits;
+        private final int numHashes;
+        private final AtomicLong setBits = new AtomicLong();
+
+        Bits(long keys, double falsePositiveRate) {
+            long optimalBits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (LN2 * LN2));
+            int numWords = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) >>> 6));
+            this.words = new AtomicLongArray(numWords);
+            this.numBits = numWords * 64L;
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / keys * LN2));
+        }
+
+        boolean get(long index) {
+            return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+        }
+
+        void set(long index) {
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            do {
+                old = words.get(word);
+                if ((old & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(word, old, old | mask));
+            setBits.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.path.stream.app;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Per top-level member hashes of a JSON object, kept next to the document
+ * fingerprint when a mapping emits deltas (see {@link DeltaEncoder}).
+ * <p>
+ * Each member is reduced to two 64-bit values: a hash of its name and the
+ * first 8 bytes of its canonical member digest, so ignored paths and member
+ * order do not count as changes. Entries are sorted by name hash, 16 bytes
+ * per member.
+ */
+public final class MemberHashes {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] names;
+    private final long[] values;
+
+    private MemberHashes(long[] names, long[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the value hash of the named member, or null if there is no such member
+     */
+    public Long valueOf(long nameHash) {
+        int index = Arrays.binarySearch(names, nameHash);
+        return index < 0 ? null : values[index];
+    }
+
+    public long nameAt(int index) {
+        return names[index];
+    }
+
+    public long valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units of a member name.
+     */
+    public static long nameHash(String name) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public int serializedSize() {
+        return Integer.BYTES + names.length * 2 * Long.BYTES;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            buffer.putLong(names[i]);
+            buffer.putLong(values[i]);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the buffer does not hold a complete vector
+     */
+    public static MemberHashes readFrom(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != count * 2L * Long.BYTES) {
+            throw new IllegalArgumentException("Corrupt member hashes");
+        }
+        long[] names = new long[count];
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = buffer.getLong();
+            values[i] = buffer.getLong();
+        }
+        return new MemberHashes(names, values);
+    }
+
+    /**
+     * Collects the members of one document while it is fingerprinted.
+     */
+    public static final class Builder {
+
+        private long[] names = new long[16];
+        private long[] values = new long[16];
+        private int count;
+        private boolean object;
+
+        void object() {
+            this.object = true;
+        }
+
+        void add(long nameHash, long valueHash) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            names[count] = nameHash;
+            values[count] = valueHash;
+            count++;
+        }
+
+        /**
+         * Forgets the members, e.g. when the document turned out not to be valid JSON.
+         */
+        void clear() {
+            this.count = 0;
+            this.object = false;
+        }
+
+        /**
+         * @return the sorted hashes, or null if the document was not a JSON
+         * object or repeats a member name
+         */
+        public MemberHashes build() {
+            if (!object) {
+                return null;
+            }
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(names[a], names[b]));
+            long[] sortedNames = new long[count];
+            long[] sortedValues = new long[count];
+            for (int i = 0; i < count; i++) {
+                sortedNames[i] = names[order[i]];
+                sortedValues[i] = values[order[i]];
+                if (i > 0 && sortedNames[i] == sortedNames[i - 1]) {
+                    return null;
+                }
+            }
+            return new MemberHashes(sortedNames, sortedValues);
+        }
+    }
+}
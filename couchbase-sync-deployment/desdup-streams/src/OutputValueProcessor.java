@@ -0,0 +1,41 @@
+package com.path.stream.app;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unwraps the value to publish to the output topic from a {@link DedupResult},
+ * drops record-only results, and marks patches with the {@link DeltaEncoder#HEADER} header. The header
+ * is added to a copy of the input headers, so the fingerprint topic branch
+ * does not see it.
+ */
+public class OutputValueProcessor<V> implements FixedKeyProcessor<String, DedupResult<V>, V> {
+
+    private static final byte[] JSON_PATCH = DeltaEncoder.JSON_PATCH.getBytes(StandardCharsets.UTF_8);
+
+    private FixedKeyProcessorContext<String, V> context;
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, V> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, DedupResult<V>> record) {
+        DedupResult<V> result = record.value();
+        if (result.isRecordOnly()) {
+            return;
+        }
+        if (!result.patch) {
+            context.forward(record.withValue(result.value));
+            return;
+        }
+        RecordHeaders headers = new RecordHeaders(record.headers().toArray());
+        headers.add(DeltaEncoder.HEADER, JSON_PATCH);
+        context.forward(record.withValue(result.value).withHeaders(headers));
+    }
+}
@@ -0,0 +1,101 @@
+package com.path.stream.app;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.time.Duration;
+
+/**
+ * The fingerprint records most recently applied to a global fingerprint
+ * store, kept so that a {@link DedupTransformerWithCache} that starts after
+ * a restart or rebalance can pre-warm its local cache instead of starting
+ * empty.
+ * <p>
+ * {@link FingerprintTableProcessor} fills it from the restored store when it
+ * starts, and then with every record it applies, tombstones included. When
+ * it is full the oldest entries are overwritten. An entry only warms a
+ * cache while it is younger than the cache TTL, so a task starts with the
+ * fingerprints its cache would hold had it been running all along, except
+ * that keys of other partitions take up part of the budget.
+ * <p>
+ * Written by the global thread and read by the stream threads.
+ */
+public final class RecentFingerprints {
+
+    private final String[] keys;
+    private final FingerprintRecord[] records;
+    private final long windowMs;
+    private int next;
+    private int size;
+
+    /**
+     * @param window age from which a record no longer warms a cache, the cache TTL
+     */
+    public RecentFingerprints(int maxEntries, Duration window) {
+        this.keys = new String[Math.max(1, maxEntries)];
+        this.records = new FingerprintRecord[keys.length];
+        this.windowMs = window.toMillis();
+    }
+
+    /**
+     * Adds the records of the restored store that are still within the window.
+     */
+    public void collect(KeyValueIterator<String, ValueAndTimestamp<FingerprintRecord>> entries, long now) {
+        try {
+            while (entries.hasNext()) {
+                KeyValue<String, ValueAndTimestamp<FingerprintRecord>> entry = entries.next();
+                if (now - entry.value.value().timestamp() < windowMs) {
+                    add(entry.key, entry.value.value());
+                }
+            }
+        } finally {
+            entries.close();
+        }
+    }
+
+    /**
+     * @param record the applied record, or null for a tombstone
+     */
+    public synchronized void add(String key, FingerprintRecord record) {
+        keys[next] = key;
+        records[next] = record;
+        next = (next + 1) % keys.length;
+        size = Math.min(size + 1, keys.length);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Puts the records within the window into the cache, oldest first, and
+     * removes keys that were deleted afterwards.
+     *
+     * @return the number of records put
+     */
+    public int warm(FingerprintCache cache, long now) {
+        String[] warmKeys;
+        FingerprintRecord[] warmRecords;
+        synchronized (this) {
+            warmKeys = new String[size];
+            warmRecords = new FingerprintRecord[size];
+            for (int i = 0, slot = (next - size + keys.length) % keys.length; i < size; i++, slot = (slot + 1) % keys.length) {
+                warmKeys[i] = keys[slot];
+                warmRecords[i] = records[slot];
+            }
+        }
+        int warmed = 0;
+        for (int i = 0; i < warmKeys.length; i++) {
+            FingerprintRecord record = warmRecords[i];
+            if (record == null) {
+                cache.remove(warmKeys[i]);
+            } else if (now - record.timestamp() < windowMs) {
+                // Expires when it would have, had the task cached it on acceptance
+                cache.put(warmKeys[i], record.fingerprint(), record.timestamp());
+                warmed++;
+            }
+        }
+        return warmed;
+    }
+}
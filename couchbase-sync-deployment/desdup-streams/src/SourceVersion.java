@@ -0,0 +1,136 @@
+package com.path.stream.app;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the source version of a record (the Couchbase CAS or revision
+ * sequence number) so that replays can be decided without hashing the body.
+ * <p>
+ * The version is taken from the mapping's {@code version.header} header,
+ * either 8 bytes big-endian or a decimal string, and otherwise from the
+ * numeric or decimal string member at {@code version.path}. Reading the path
+ * parses the document only up to that member. Versions are compared as
+ * signed longs, which holds for CAS values (nanosecond timestamps) and
+ * sequence numbers.
+ */
+public final class SourceVersion {
+
+    /**
+     * Returned when the record carries no readable version.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String header;
+    private final String[] path;
+
+    public SourceVersion(String header, String path) {
+        this.header = header == null || header.trim().isEmpty() ? null : header.trim();
+        this.path = path == null || path.trim().isEmpty() ? null : path.trim().split("\\.");
+        if (this.path != null) {
+            for (String segment : this.path) {
+                if (segment.isEmpty()) {
+                    throw new IllegalArgumentException("Invalid version path: " + path);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the reader declared for the mapping, or null if it has no version source
+     */
+    public static SourceVersion forMapping(DedupTopicMapper.TopicMapping mapping) {
+        String header = mapping.getOption(DedupTopicMapper.VERSION_HEADER_OPTION, null);
+        String path = mapping.getOption(DedupTopicMapper.VERSION_PATH_OPTION, null);
+        SourceVersion version = new SourceVersion(header, path);
+        return version.header == null && version.path == null ? null : version;
+    }
+
+    /**
+     * @return the record's version, or {@link #NONE}
+     */
+    public long read(Headers headers, Object value) {
+        if (header != null && headers != null) {
+            Header last = headers.lastHeader(header);
+            long version = last == null ? NONE : parse(last.value());
+            if (version != NONE) {
+                return version;
+            }
+        }
+        if (path != null && value != null) {
+            return readPath(value);
+        }
+        return NONE;
+    }
+
+    private static long parse(byte[] bytes) {
+        if (bytes == null) {
+            return NONE;
+        }
+        if (bytes.length == Long.BYTES && !isDecimal(bytes)) {
+            long value = 0;
+            for (byte b : bytes) {
+                value = (value << 8) | (b & 0xFFL);
+            }
+            return value;
+        }
+        return parse(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static boolean isDecimal(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parse(String text) {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    private long readPath(Object value) {
+        try (JsonParser parser = value instanceof byte[] ? JSON.createParser((byte[]) value) : JSON.createParser((String) value)) {
+            JsonToken token = parser.nextToken();
+            for (int depth = 0; depth < path.length; depth++) {
+                if (token != JsonToken.START_OBJECT || !member(parser, path[depth])) {
+                    return NONE;
+                }
+                token = parser.nextToken();
+            }
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return parser.getLongValue();
+            }
+            return token == JsonToken.VALUE_STRING ? parse(parser.getText()) : NONE;
+        } catch (IOException e) {
+            return NONE;
+        }
+    }
+
+    /**
+     * Advances to the name of the member, skipping the members before it.
+     */
+    private static boolean member(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.getCurrentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+}
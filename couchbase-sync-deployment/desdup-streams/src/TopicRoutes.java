@@ -0,0 +1,163 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.Metrics;
+import org.apache.kafka.streams.processor.TopicNameExtractor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per input topic settings of the consolidated topology, where one source
+ * reads every mapped input topic and one store holds the fingerprints of
+ * all of them.
+ * <p>
+ * A topic is resolved from the mapping file first. Other topics matching
+ * {@code dedup.consolidated.input-pattern} are mapped to
+ * {@code dedup.consolidated.output-topic}, with {@code $n} replaced by
+ * pattern groups, and use the default options; such topics are picked up
+ * by the running application as soon as they are created. Their fingerprint
+ * topics are checked with {@link FingerprintTopicValidator} when the topic is
+ * first routed.
+ * <p>
+ * Store keys are prefixed with the input topic and {@link #KEY_SEPARATOR},
+ * which cannot occur in a topic name, so equal keys of different topics
+ * never collide.
+ */
+public class TopicRoutes {
+
+    public static final char KEY_SEPARATOR = '|';
+
+    /**
+     * Resolved settings of one input topic.
+     */
+    public static final class Route {
+        public final String inputTopic;
+        public final DedupTopicMapper.TopicMapping mapping;
+        public final DocumentFingerprinter fingerprinter;
+        public final DeltaEncoder delta;
+        public final SourceVersion versions;
+        public final long retentionMs;
+        public final DedupMetrics metrics;
+
+        Route(String inputTopic, DedupTopicMapper.TopicMapping mapping, DocumentFingerprinter fingerprinter,
+              DedupMetrics metrics) {
+            this.inputTopic = inputTopic;
+            this.mapping = mapping;
+            this.fingerprinter = fingerprinter;
+            this.delta = DeltaEncoder.forMapping(mapping);
+            this.versions = SourceVersion.forMapping(mapping);
+            this.retentionMs = mapping.getRetention().toMillis();
+            this.metrics = metrics;
+        }
+
+        public String storeKey(String key) {
+            return inputTopic + KEY_SEPARATOR + key;
+        }
+    }
+
+    private final DedupTopicMapper mapper;
+    private final FingerprintEngine engine;
+    private final Pattern inputPattern;
+    private final String outputTemplate;
+    private final DecisionLog decisionLog;
+    private final FingerprintTopicValidator fingerprintTopics;
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    /**
+     * @param fingerprintTopics check of pattern-matched fingerprint topics, or null to skip it
+     */
+    public TopicRoutes(DedupTopicMapper mapper, FingerprintEngine engine, DedupProperties.Consolidated settings,
+                       DecisionLog decisionLog, FingerprintTopicValidator fingerprintTopics) {
+        this.mapper = mapper;
+        this.fingerprintTopics = fingerprintTopics;
+        this.engine = engine;
+        this.inputPattern = settings.getInputPattern() == null || settings.getInputPattern().trim().isEmpty()
+                ? null : Pattern.compile(settings.getInputPattern().trim());
+        this.outputTemplate = settings.getOutputTopic();
+        this.decisionLog = decisionLog;
+        if (inputPattern != null && (outputTemplate == null || outputTemplate.trim().isEmpty())) {
+            throw new IllegalArgumentException("dedup.consolidated.input-pattern requires dedup.consolidated.output-topic");
+        }
+    }
+
+    /**
+     * Subscription of the consolidated source: the mapped topics plus the input pattern.
+     */
+    public Pattern sourcePattern() {
+        List<String> alternatives = new ArrayList<>();
+        for (String topic : mapper.getAllInputTopics()) {
+            alternatives.add(Pattern.quote(topic));
+        }
+        if (inputPattern != null) {
+            alternatives.add("(?:" + inputPattern.pattern() + ")");
+        }
+        return Pattern.compile(String.join("|", alternatives));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the topic is neither mapped nor matched by the pattern
+     */
+    public Route route(String inputTopic) {
+        Route route = routes.get(inputTopic);
+        return route != null ? route : routes.computeIfAbsent(inputTopic, this::resolve);
+    }
+
+    private Route resolve(String inputTopic) {
+        DedupTopicMapper.TopicMapping mapping;
+        if (mapper.getAllInputTopics().contains(inputTopic)) {
+            mapping = mapper.getMapping(inputTopic);
+        } else {
+            Matcher matcher = inputPattern == null ? null : inputPattern.matcher(inputTopic);
+            if (matcher == null || !matcher.matches()) {
+                throw new IllegalArgumentException("No mapping found for input topic: " + inputTopic);
+            }
+            mapping = new DedupTopicMapper.TopicMapping(matcher.replaceFirst(outputTemplate.trim()));
+            if (fingerprintTopics != null) {
+                fingerprintTopics.ensureCompacted(mapping.getFingerprintTopic());
+            }
+        }
+        return new Route(inputTopic, mapping, DocumentFingerprinter.forMapping(engine, mapping),
+                DedupMetrics.forTopic(Metrics.globalRegistry, inputTopic, decisionLog));
+    }
+
+    /**
+     * Retention of a store key written by {@link Route#storeKey}; keys of
+     * topics that are no longer mapped are kept.
+     */
+    public long retentionOf(String storeKey) {
+        int separator = storeKey.indexOf(KEY_SEPARATOR);
+        if (separator < 0) {
+            return 0;
+        }
+        try {
+            return route(storeKey.substring(0, separator)).retentionMs;
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Whether any mapped topic keeps fingerprints for a limited time only;
+     * pattern-matched topics always keep them forever.
+     */
+    public boolean hasRetention() {
+        for (String topic : mapper.getAllInputTopics()) {
+            if (!mapper.getMapping(topic).getRetention().isZero()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public <V> TopicNameExtractor<String, V> outputTopics() {
+        return (key, value, context) -> route(context.topic()).mapping.outputTopic;
+    }
+
+    public <V> TopicNameExtractor<String, V> fingerprintTopics() {
+        return (key, value, context) -> route(context.topic()).mapping.getFingerprintTopic();
+    }
+}
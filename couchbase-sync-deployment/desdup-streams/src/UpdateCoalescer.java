@@ -0,0 +1,251 @@
+package com.path.stream.app;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * =============================================================
+ * UpdateCoalescer
+ * =============================================================
+ * Debounces frequently updated keys in front of deduplication, so that a
+ * document rewritten many times within seconds is published once, in its
+ * final version. A buffered key is emitted once it has not been updated
+ * for {@code window}, and at the latest {@code max-delay} after its first
+ * buffered update; later updates replace the buffered one.
+ * <p>
+ * With mode {@code all} every key is buffered. With mode {@code hot} only
+ * keys whose rate in the current second reaches {@code hot-rate}, as
+ * estimated by a per-task {@link HotKeySketch}, are buffered; other updates
+ * pass straight through. An update of a key that is buffered always joins
+ * the buffer, so the order of a key's updates is kept. Deletes are passed
+ * through at once and discard the buffered update.
+ * <p>
+ * Buffered updates, including their headers, are kept in a changelogged
+ * RocksDB store with a deadline index next to it. Memory is bounded by the
+ * record cache; the rest spills to RocksDB, and buffered updates survive a
+ * restart or rebalance. Beyond {@code max-buffered-keys} per task, the keys
+ * closest to their deadline are emitted early.
+ */
+public class UpdateCoalescer<V> implements Processor<String, V, String, V> {
+
+    /**
+     * Which keys of a mapping are coalesced.
+     */
+    public enum Mode {
+        NONE,
+        ALL,
+        HOT
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final String bufferStoreName;
+    private final String indexStoreName;
+    private final DedupValueFormat<V> format;
+    private final DedupProperties.Coalesce settings;
+    private final DedupMetrics metrics;
+    private final HotKeySketch sketch = new HotKeySketch();
+
+    private ProcessorContext<String, V> context;
+    private KeyValueStore<String, byte[]> buffer;
+    private KeyValueStore<Bytes, byte[]> index;
+    private Serializer<V> valueSerializer;
+    private Deserializer<V> valueDeserializer;
+    private int buffered;
+    private List<Meter> meters = Collections.emptyList();
+
+    /**
+     * @param bufferStoreName buffered update per key
+     * @param indexStoreName  deadline index of the buffered keys, ordered by deadline
+     * @param settings        the mapping's coalescing settings
+     */
+    public UpdateCoalescer(String bufferStoreName, String indexStoreName, DedupValueFormat<V> format,
+                           DedupProperties.Coalesce settings, DedupMetrics metrics) {
+        this.bufferStoreName = bufferStoreName;
+        this.indexStoreName = indexStoreName;
+        this.format = format;
+        this.settings = settings;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, V> context) {
+        this.context = context;
+        this.buffer = context.getStateStore(bufferStoreName);
+        this.index = context.getStateStore(indexStoreName);
+        this.valueSerializer = format.serde().serializer();
+        this.valueDeserializer = format.serde().deserializer();
+
+        // Updates buffered before the task last stopped are emitted by the first punctuation
+        try (KeyValueIterator<Bytes, byte[]> entries = index.all()) {
+            while (entries.hasNext()) {
+                entries.next();
+                buffered++;
+            }
+        }
+        this.meters = Collections.singletonList(Gauge.builder("dedup.coalesce.buffered", this, coalescer -> coalescer.buffered)
+                .tag("store", bufferStoreName).tag("task", context.taskId().toString())
+                .description("Keys waiting in the coalescing buffer")
+                .register(Metrics.globalRegistry));
+
+        context.schedule(settings.getInterval(), PunctuationType.WALL_CLOCK_TIME, now -> emit(now, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void process(Record<String, V> record) {
+        if (record.key() == null) {
+            context.forward(record);
+            return;
+        }
+        String key = record.key();
+        long now = context.currentSystemTimeMs();
+        byte[] entry = buffer.get(key);
+        boolean hot = settings.getMode() == Mode.HOT && sketch.add(key, now) >= settings.getHotRate();
+
+        if (record.value() == null) {
+            if (entry != null) {
+                remove(key, entry);
+                metrics.recordCoalesce(DedupMetrics.Coalesce.COALESCED);
+            }
+            context.forward(record);
+            return;
+        }
+        if (entry == null && settings.getMode() == Mode.HOT && !hot) {
+            context.forward(record);
+            return;
+        }
+
+        long first = entry == null ? now : ByteBuffer.wrap(entry).getLong();
+        long deadline = Math.min(now + settings.getWindow().toMillis(), first + settings.getMaxDelay().toMillis());
+        if (entry != null) {
+            index.delete(indexKey(deadlineOf(entry), key));
+            metrics.recordCoalesce(DedupMetrics.Coalesce.COALESCED);
+        } else {
+            buffered++;
+            metrics.recordCoalesce(DedupMetrics.Coalesce.BUFFERED);
+        }
+        buffer.put(key, encode(first, deadline, record));
+        index.put(indexKey(deadline, key), EMPTY);
+
+        if (buffered > settings.getMaxBufferedKeys()) {
+            emit(Long.MAX_VALUE, buffered - settings.getMaxBufferedKeys());
+        }
+    }
+
+    /**
+     * Emits up to {@code limit} buffered keys whose deadline is not after {@code now}, earliest first.
+     */
+    private void emit(long now, int limit) {
+        List<String> due = new ArrayList<>();
+        try (KeyValueIterator<Bytes, byte[]> entries = index.all()) {
+            while (entries.hasNext() && due.size() < limit) {
+                byte[] indexKey = entries.next().key.get();
+                if (ByteBuffer.wrap(indexKey).getLong() > now) {
+                    break;
+                }
+                due.add(new String(indexKey, Long.BYTES, indexKey.length - Long.BYTES, StandardCharsets.UTF_8));
+            }
+        }
+        for (String key : due) {
+            byte[] entry = buffer.get(key);
+            if (entry == null) {
+                continue;
+            }
+            remove(key, entry);
+            context.forward(decode(key, entry));
+            metrics.recordCoalesce(DedupMetrics.Coalesce.EMITTED);
+        }
+    }
+
+    private void remove(String key, byte[] entry) {
+        buffer.delete(key);
+        index.delete(indexKey(deadlineOf(entry), key));
+        buffered--;
+    }
+
+    /**
+     * Deadline first, so that the index iterates in deadline order.
+     */
+    private static Bytes indexKey(long deadline, String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        return Bytes.wrap(ByteBuffer.allocate(Long.BYTES + keyBytes.length).putLong(deadline).put(keyBytes).array());
+    }
+
+    private static long deadlineOf(byte[] entry) {
+        return ByteBuffer.wrap(entry).getLong(Long.BYTES);
+    }
+
+    /**
+     * Buffer entry: first update time, deadline, record timestamp, headers
+     * (count, then length-prefixed key and value of each, -1 for a null
+     * value) and serialized value.
+     */
+    private byte[] encode(long first, long deadline, Record<String, V> record) {
+        byte[] value = valueSerializer.serialize(null, record.value());
+        Header[] headers = record.headers().toArray();
+        int size = 3 * Long.BYTES + Integer.BYTES + value.length;
+        byte[][] headerKeys = new byte[headers.length][];
+        for (int i = 0; i < headers.length; i++) {
+            headerKeys[i] = headers[i].key().getBytes(StandardCharsets.UTF_8);
+            size += 2 * Integer.BYTES + headerKeys[i].length + (headers[i].value() == null ? 0 : headers[i].value().length);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(size)
+                .putLong(first)
+                .putLong(deadline)
+                .putLong(record.timestamp())
+                .putInt(headers.length);
+        for (int i = 0; i < headers.length; i++) {
+            bytes.putInt(headerKeys[i].length).put(headerKeys[i]);
+            byte[] headerValue = headers[i].value();
+            bytes.putInt(headerValue == null ? -1 : headerValue.length);
+            if (headerValue != null) {
+                bytes.put(headerValue);
+            }
+        }
+        return bytes.put(value).array();
+    }
+
+    private Record<String, V> decode(String key, byte[] entry) {
+        ByteBuffer bytes = ByteBuffer.wrap(entry);
+        bytes.position(2 * Long.BYTES);
+        long timestamp = bytes.getLong();
+        Headers headers = new RecordHeaders();
+        for (int count = bytes.getInt(); count > 0; count--) {
+            byte[] headerKey = new byte[bytes.getInt()];
+            bytes.get(headerKey);
+            int length = bytes.getInt();
+            byte[] headerValue = length < 0 ? null : new byte[length];
+            if (headerValue != null) {
+                bytes.get(headerValue);
+            }
+            headers.add(new String(headerKey, StandardCharsets.UTF_8), headerValue);
+        }
+        byte[] value = new byte[bytes.remaining()];
+        bytes.get(value);
+        return new Record<>(key, valueDeserializer.deserialize(null, value), timestamp, headers);
+    }
+
+    @Override
+    public void close() {
+        meters.forEach(Metrics.globalRegistry::remove);
+    }
+}
@@ -2,27 +2,32 @@ package com.path.custom.kafka.connect.transforms;
 
 import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.JsonNode;
 import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.wnameless.json.flattener.JsonFlattener;
-import org.apache.commons.jexl3.*;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.connect.connector.ConnectRecord;
 import org.apache.kafka.connect.transforms.Transformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
 
 public class ConditionalDocumentFilter<R extends ConnectRecord<R>> implements Transformation<R> {
     private static final Logger log = LoggerFactory.getLogger(ConditionalDocumentFilter.class);
 
     public static final String EXPR_PROPERTY = "couchbase.conditional.filter.expr";
+    public static final String CONVERT_TO_MAP_PROPERTY = "couchbase.conditional.filter.convert.to.map";
     public static final ConfigDef CONFIG_DEF = new ConfigDef()
             .define(EXPR_PROPERTY, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE,
-                    ConfigDef.Importance.HIGH, "JEXL expression for conditional document filtering");
+                    ConfigDef.Importance.HIGH, "JEXL expression for conditional document filtering")
+            .define(CONVERT_TO_MAP_PROPERTY, ConfigDef.Type.BOOLEAN, true,
+                    ConfigDef.Importance.LOW, "Replace the value of passing records with the parsed document as a schemaless Map; "
+                            + "false forwards them unchanged and skips the full parse");
 
     private final ObjectMapper mapper = new ObjectMapper();
-    private JexlExpression expression;
+    private FilterExpression expression;
+    private DocumentFields fields;
+    private boolean convertToMap;
+    private FilterMetrics metrics;
 
     @Override
     public R apply(R record) {
@@ -31,37 +36,48 @@ public class ConditionalDocumentFilter<R extends ConnectRecord<R>> implements Tr
             return null;
         }
 
+        Object value = record.value();
+        if (!DocumentFields.isSupported(value)) {
+            log.warn("Unsupported record value type: {}", value.getClass());
+            return record;
+        }
+
+        long start = System.nanoTime();
         try {
-            Object value = record.value();
-            JsonNode docNode;
-
-            // Parse record value
-            if (value instanceof byte[]) {
-                String jsonString = new String((byte[]) value, StandardCharsets.UTF_8);
-                docNode = mapper.readTree(jsonString);
-            } else if (value instanceof String) {
-                docNode = mapper.readTree((String) value);
-            } else if (value instanceof Map) {
-                docNode = mapper.valueToTree(value);
-            } else {
-                log.warn("Unsupported record value type: {}", value.getClass());
-                return record;
+            // Read only the fields the expression refers to; flatten the whole document if that is not possible
+            JsonNode docNode = null;
+            Map<String, Object> flattenedMap = fields.extract(value);
+            if (flattenedMap == null) {
+                metrics.fullParse();
+                docNode = fields.readTree(value);
+                flattenedMap = fields.flatten(docNode);
             }
 
-            // ✅ Use JsonFlattener to flatten the JSON
-            String jsonString = mapper.writeValueAsString(docNode);
-            Map<String, Object> flattenedMap = JsonFlattener.flattenAsMap(jsonString);
-
-            // Evaluate JEXL expression using flattened map
-            JexlContext context = new MapContext(flattenedMap);
-            Boolean result = (Boolean) expression.evaluate(context);
+            // Evaluate the (compiled or interpreted) expression using flattened map
+            Object result = expression.evaluate(flattenedMap);
+            metrics.recordEvalTime(start);
 
+            if (result != null && !(result instanceof Boolean)) {
+                metrics.error();
+                log.debug("Expression returned {} instead of a boolean, dropping key={}", result.getClass().getSimpleName(), record.key());
+                return null;
+            }
             if (Boolean.FALSE.equals(result)) {
-                log.info("Record filtered out by expression, key={}", record.key());
+                metrics.filtered();
+                log.debug("Record filtered out by expression, key={}", record.key());
                 return null;
             }
 
-            // Convert JsonNode back to Map for downstream SMTs
+            metrics.passed();
+            if (!convertToMap) {
+                log.debug("Record passed filter, forwarding it unchanged: key={}", record.key());
+                return record;
+            }
+
+            // Convert JsonNode back to Map for downstream SMTs; only passing records pay for the full parse
+            if (docNode == null) {
+                docNode = fields.readTree(value);
+            }
             Map<String, Object> mapValue = mapper.convertValue(docNode, Map.class);
             R newRecord = (R) record.newRecord(
                     record.topic(),
@@ -77,6 +93,7 @@ public class ConditionalDocumentFilter<R extends ConnectRecord<R>> implements Tr
             return newRecord;
 
         } catch (Exception e) {
+            metrics.error();
             log.error("Error applying filter to record key={}", record.key(), e);
             return null;
         }
@@ -89,7 +106,10 @@ public class ConditionalDocumentFilter<R extends ConnectRecord<R>> implements Tr
 
     @Override
     public void close() {
-        // No resources to close
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
     }
 
     @Override
@@ -99,8 +119,14 @@ public class ConditionalDocumentFilter<R extends ConnectRecord<R>> implements Tr
             throw new IllegalArgumentException(EXPR_PROPERTY + " configuration is required");
         }
 
-        JexlEngine jexl = new JexlBuilder().create();
-        this.expression = jexl.createExpression(exprString);
-        log.info("Initialized conditional document filter with expression: {}", exprString);
+        this.expression = FilterExpression.parse(exprString);
+        this.fields = new DocumentFields(mapper, Collections.singletonList(expression));
+        Object convert = configs.get(CONVERT_TO_MAP_PROPERTY);
+        this.convertToMap = convert == null || Boolean.parseBoolean(convert.toString());
+        close();
+        this.metrics = new FilterMetrics();
+        metrics.trackFallbacks(Collections.singletonList(expression));
+        log.info("Initialized conditional document filter with expression: {} (compiled={}, fields={}, convertToMap={})",
+                exprString, expression.isCompiled(), fields.paths() != null ? fields.paths() : "all", convertToMap);
     }
 }
@@ -0,0 +1,220 @@
+package com.path.custom.kafka.connect.transforms;
+
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Applies an ordered list of named rules to each record, replacing a chain
+ * of {@link ConditionalDocumentFilter} instances with a single document pass.
+ * <p>
+ * Each rule has a filter expression and an action: {@code keep} forwards
+ * the record, {@code drop} discards it and {@code route} forwards it to the
+ * rule's topic ({@code ${topic}} is replaced by the record's topic). The
+ * first rule whose expression is true decides the record; records that no
+ * rule matches get the default action. The fields of all rules are read in
+ * one pass (see {@link DocumentFields}), and the forwarded value is the
+ * original one.
+ * <pre>
+ * couchbase.conditional.router.rules=archived,eu
+ * couchbase.conditional.router.rule.archived.expr=status == 'ARCHIVED'
+ * couchbase.conditional.router.rule.archived.action=drop
+ * couchbase.conditional.router.rule.eu.expr=customer.address.region == 'EU'
+ * couchbase.conditional.router.rule.eu.action=route
+ * couchbase.conditional.router.rule.eu.topic=${topic}-eu
+ * </pre>
+ */
+public class ConditionalDocumentRouter<R extends ConnectRecord<R>> implements Transformation<R> {
+    private static final Logger log = LoggerFactory.getLogger(ConditionalDocumentRouter.class);
+
+    public static final String RULES_PROPERTY = "couchbase.conditional.router.rules";
+    public static final String DEFAULT_ACTION_PROPERTY = "couchbase.conditional.router.default.action";
+    public static final String RULE_PREFIX = "couchbase.conditional.router.rule.";
+    public static final String EXPR_SUFFIX = ".expr";
+    public static final String ACTION_SUFFIX = ".action";
+    public static final String TOPIC_SUFFIX = ".topic";
+    public static final ConfigDef CONFIG_DEF = new ConfigDef()
+            .define(RULES_PROPERTY, ConfigDef.Type.LIST, ConfigDef.NO_DEFAULT_VALUE,
+                    ConfigDef.Importance.HIGH, "Names of the rules, in evaluation order; each rule is configured with "
+                            + RULE_PREFIX + "<name>" + EXPR_SUFFIX + ", " + ACTION_SUFFIX + " (keep, drop or route) and "
+                            + TOPIC_SUFFIX + " (for route, may contain ${topic})")
+            .define(DEFAULT_ACTION_PROPERTY, ConfigDef.Type.STRING, "keep",
+                    ConfigDef.Importance.MEDIUM, "Action for records that no rule matches: keep or drop");
+
+    enum Action {
+        KEEP, DROP, ROUTE
+    }
+
+    static final class Rule {
+        final String name;
+        final FilterExpression expression;
+        final Action action;
+        final String topic;
+
+        Rule(String name, FilterExpression expression, Action action, String topic) {
+            this.name = name;
+            this.expression = expression;
+            this.action = action;
+            this.topic = topic;
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Rule> rules = new ArrayList<>();
+    private Action defaultAction;
+    private DocumentFields fields;
+    private FilterMetrics metrics;
+
+    @Override
+    public R apply(R record) {
+        if (record.value() == null) {
+            log.debug("Record value is null, skipping key={}", record.key());
+            return null;
+        }
+
+        Object value = record.value();
+        if (!DocumentFields.isSupported(value)) {
+            log.warn("Unsupported record value type: {}", value.getClass());
+            return record;
+        }
+
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> flattenedMap = fields.extract(value);
+            if (flattenedMap == null) {
+                metrics.fullParse();
+                flattenedMap = fields.flatten(fields.readTree(value));
+            }
+
+            for (int i = 0; i < rules.size(); i++) {
+                Rule rule = rules.get(i);
+                Object result = rule.expression.evaluate(flattenedMap);
+                if (result != null && !(result instanceof Boolean)) {
+                    metrics.recordEvalTime(start);
+                    metrics.error();
+                    log.debug("Rule '{}' returned {} instead of a boolean, dropping key={}",
+                            rule.name, result.getClass().getSimpleName(), record.key());
+                    return null;
+                }
+                if (Boolean.TRUE.equals(result)) {
+                    metrics.recordEvalTime(start);
+                    metrics.ruleMatched(i);
+                    log.debug("Rule '{}' matched key={}, action={}", rule.name, record.key(), rule.action);
+                    return act(record, rule.action, rule.topic);
+                }
+            }
+
+            metrics.recordEvalTime(start);
+            log.debug("No rule matched key={}, action={}", record.key(), defaultAction);
+            return act(record, defaultAction, null);
+
+        } catch (Exception e) {
+            metrics.error();
+            log.error("Error applying rules to record key={}", record.key(), e);
+            return null;
+        }
+    }
+
+    private R act(R record, Action action, String topic) {
+        switch (action) {
+            case DROP:
+                metrics.filtered();
+                return null;
+            case ROUTE:
+                metrics.passed();
+                return record.newRecord(
+                        topic.replace("${topic}", record.topic()),
+                        record.kafkaPartition(),
+                        record.keySchema(),
+                        record.key(),
+                        record.valueSchema(),
+                        record.value(),
+                        record.timestamp()
+                );
+            default:
+                metrics.passed();
+                return record;
+        }
+    }
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    @Override
+    public void close() {
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Map<String, Object> parsed = CONFIG_DEF.parse(configs);
+        @SuppressWarnings("unchecked")
+        List<String> names = (List<String>) parsed.get(RULES_PROPERTY);
+        if (names.isEmpty()) {
+            throw new ConfigException(RULES_PROPERTY, names, "At least one rule is required");
+        }
+
+        List<Rule> configured = new ArrayList<>();
+        List<FilterExpression> expressions = new ArrayList<>();
+        for (String name : names) {
+            String expr = string(configs, RULE_PREFIX + name + EXPR_SUFFIX);
+            if (expr == null || expr.isEmpty()) {
+                throw new ConfigException(RULE_PREFIX + name + EXPR_SUFFIX, expr, "Rule '" + name + "' has no expression");
+            }
+            Action action = action(RULE_PREFIX + name + ACTION_SUFFIX, string(configs, RULE_PREFIX + name + ACTION_SUFFIX));
+            String topic = string(configs, RULE_PREFIX + name + TOPIC_SUFFIX);
+            if (action == Action.ROUTE && (topic == null || topic.isEmpty())) {
+                throw new ConfigException(RULE_PREFIX + name + TOPIC_SUFFIX, topic, "Rule '" + name + "' routes but has no topic");
+            }
+            FilterExpression expression = FilterExpression.parse(expr);
+            configured.add(new Rule(name, expression, action, topic));
+            expressions.add(expression);
+        }
+        Action fallback = action(DEFAULT_ACTION_PROPERTY, (String) parsed.get(DEFAULT_ACTION_PROPERTY));
+        if (fallback == Action.ROUTE) {
+            throw new ConfigException(DEFAULT_ACTION_PROPERTY, "route", "The default action must be keep or drop");
+        }
+
+        rules.clear();
+        rules.addAll(configured);
+        this.defaultAction = fallback;
+        this.fields = new DocumentFields(mapper, expressions);
+        close();
+        this.metrics = new FilterMetrics(FilterMetrics.ROUTER_GROUP);
+        metrics.trackFallbacks(Collections.unmodifiableList(expressions));
+        metrics.trackRules(names);
+        log.info("Initialized conditional document router with rules {} (default={}, fields={})",
+                names, defaultAction, fields.paths() != null ? fields.paths() : "all");
+    }
+
+    private static String string(Map<String, ?> configs, String key) {
+        Object value = configs.get(key);
+        return value == null ? null : value.toString().trim();
+    }
+
+    private static Action action(String key, String value) {
+        if (value == null || value.isEmpty()) {
+            return Action.KEEP;
+        }
+        try {
+            return Action.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException(key, value, "Expected keep, drop or route");
+        }
+    }
+}
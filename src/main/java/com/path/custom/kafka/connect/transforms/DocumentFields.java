@@ -0,0 +1,93 @@
+package com.path.custom.kafka.connect.transforms;
+
+import com.couchbase.client.core.deps.com.fasterxml.jackson.core.JsonParser;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.core.JsonProcessingException;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.JsonNode;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.wnameless.json.flattener.JsonFlattener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the flattened fields of a record value that a set of filter
+ * expressions refer to, in a single pass over the document.
+ * <p>
+ * The paths of all expressions are merged into one {@link PathExtractor}, so
+ * a field used by several expressions is read once. If any expression's
+ * paths are unknown, every record is flattened in full.
+ */
+final class DocumentFields {
+
+    private final ObjectMapper mapper;
+    private final Set<String> paths;
+    private final PathExtractor extractor;
+
+    DocumentFields(ObjectMapper mapper, Collection<FilterExpression> expressions) {
+        this.mapper = mapper;
+        Set<String> merged = new LinkedHashSet<>();
+        for (FilterExpression expression : expressions) {
+            Set<String> referenced = expression.referencedPaths();
+            if (referenced == null) {
+                merged = null;
+                break;
+            }
+            merged.addAll(referenced);
+        }
+        this.extractor = merged == null ? null : PathExtractor.of(merged);
+        this.paths = extractor == null ? null : Collections.unmodifiableSet(merged);
+    }
+
+    /**
+     * Record value types that can be read: JSON as byte[] or String, or a schemaless Map.
+     */
+    static boolean isSupported(Object value) {
+        return value instanceof byte[] || value instanceof String || value instanceof Map;
+    }
+
+    /**
+     * @return the paths read from each record, or null if records are flattened in full
+     */
+    Set<String> paths() {
+        return paths;
+    }
+
+    /**
+     * @return the referenced fields, or null if the record must be flattened in full
+     */
+    Map<String, Object> extract(Object value) throws IOException {
+        if (extractor == null) {
+            return null;
+        }
+        if (value instanceof Map) {
+            return extractor.extract((Map<?, ?>) value);
+        }
+        try (JsonParser parser = value instanceof byte[]
+                ? mapper.getFactory().createParser((byte[]) value)
+                : mapper.getFactory().createParser((String) value)) {
+            return extractor.extract(parser);
+        } catch (JsonProcessingException e) {
+            // Let the full parse report the error exactly as before
+            return null;
+        }
+    }
+
+    JsonNode readTree(Object value) throws IOException {
+        if (value instanceof byte[]) {
+            return mapper.readTree(new String((byte[]) value, StandardCharsets.UTF_8));
+        }
+        if (value instanceof String) {
+            return mapper.readTree((String) value);
+        }
+        return mapper.valueToTree(value);
+    }
+
+    Map<String, Object> flatten(JsonNode document) throws IOException {
+        return JsonFlattener.flattenAsMap(mapper.writeValueAsString(document));
+    }
+}
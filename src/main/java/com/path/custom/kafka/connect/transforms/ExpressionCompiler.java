@@ -0,0 +1,622 @@
+package com.path.custom.kafka.connect.transforms;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles the common subset of filter expressions into Java closures over
+ * the flattened document, so that most records are evaluated without the
+ * JEXL interpreter.
+ * <p>
+ * Supported: flattened paths ({@code customer.address.country}), string,
+ * number, boolean and null literals, {@code == != < <= > >=} (and their
+ * {@code eq ne lt le gt ge} forms), {@code =~ !~ =^ !^ =$ !$} with a string
+ * literal on the right, {@code && || !} (and {@code and or not}),
+ * {@code empty(path)}, {@code size(path)} and the string methods
+ * {@code startsWith endsWith contains equalsIgnoreCase toLowerCase
+ * toUpperCase trim length isEmpty}. Anything else makes {@link #compile}
+ * throw {@link UnsupportedOperationException} and the caller keeps using JEXL.
+ * <p>
+ * Compiled closures only decide the cases where their result is certain to
+ * match JEXL: both operands present and of the same kind (number, string,
+ * boolean, or null against anything). Any other combination, such as a
+ * missing path or a string compared with a number, evaluates to
+ * {@link #UNKNOWN} and the record is handed to JEXL, so coercion rules and
+ * strict-mode errors stay exactly as before.
+ */
+final class ExpressionCompiler {
+
+    /**
+     * Result of a closure that cannot decide the record.
+     */
+    static final Object UNKNOWN = new Object();
+
+    /**
+     * A compiled (sub)expression.
+     */
+    interface Evaluator {
+        /**
+         * @return the value, or {@link #UNKNOWN}
+         */
+        Object evaluate(Map<String, Object> fields);
+    }
+
+    private interface ValueFunction {
+        Object apply(Object value);
+    }
+
+    /**
+     * Static type of a compiled node, used for configure-time validation.
+     */
+    enum Type {
+        BOOLEAN, STRING, NUMBER, NULL, ANY
+    }
+
+    /**
+     * Compiled expression plus the flattened paths it reads.
+     */
+    static final class Compiled {
+        final Evaluator evaluator;
+        final Set<String> paths;
+
+        Compiled(Evaluator evaluator, Set<String> paths) {
+            this.evaluator = evaluator;
+            this.paths = Collections.unmodifiableSet(paths);
+        }
+    }
+
+    // JEXL words that cannot be plain path segments
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList(
+            "and", "or", "not", "eq", "ne", "lt", "le", "gt", "ge", "true", "false", "null",
+            "empty", "size", "new", "var", "let", "const", "function", "if", "else", "for", "while", "do",
+            "return", "break", "continue", "in", "div", "mod", "NaN", "import", "pragma", "this",
+            "switch", "case", "default", "try", "catch", "finally", "throw", "instanceof"));
+
+    private final List<String> tokens;
+    private final Set<String> paths = new LinkedHashSet<>();
+    private int position;
+
+    private ExpressionCompiler(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the expression is outside the subset
+     * @throws ConfigException               if it is inside the subset but can never evaluate to a boolean
+     */
+    static Compiled compile(String expression) {
+        ExpressionCompiler compiler = new ExpressionCompiler(tokenize(expression));
+        Node root = compiler.or();
+        if (compiler.position != compiler.tokens.size()) {
+            throw unsupported("unexpected '" + compiler.tokens.get(compiler.position) + "'");
+        }
+        if (root.type != Type.BOOLEAN && root.type != Type.ANY) {
+            throw new ConfigException("Filter expression does not produce a boolean: " + expression);
+        }
+        return new Compiled(root.evaluator, compiler.paths);
+    }
+
+    private static final class Node {
+        final Type type;
+        final Evaluator evaluator;
+        // Set for literals, used for validation and constant operands
+        final Object constant;
+
+        Node(Type type, Evaluator evaluator) {
+            this(type, evaluator, UNKNOWN);
+        }
+
+        Node(Type type, Evaluator evaluator, Object constant) {
+            this.type = type;
+            this.evaluator = evaluator;
+            this.constant = constant;
+        }
+
+        boolean isLiteral() {
+            return constant != UNKNOWN;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Grammar
+    // ------------------------------------------------------------------
+
+    private Node or() {
+        Node left = and();
+        while (accept("||") || accept("or")) {
+            Evaluator l = logicalOperand(left, "||").evaluator;
+            Evaluator r = logicalOperand(and(), "||").evaluator;
+            left = new Node(Type.BOOLEAN, fields -> {
+                Object value = l.evaluate(fields);
+                if (!(value instanceof Boolean)) {
+                    return UNKNOWN;
+                }
+                // TRUE short-circuits like JEXL
+                return (Boolean) value ? Boolean.TRUE : asBoolean(r.evaluate(fields));
+            });
+        }
+        return left;
+    }
+
+    private Node and() {
+        Node left = comparison();
+        while (accept("&&") || accept("and")) {
+            Evaluator l = logicalOperand(left, "&&").evaluator;
+            Evaluator r = logicalOperand(comparison(), "&&").evaluator;
+            left = new Node(Type.BOOLEAN, fields -> {
+                Object value = l.evaluate(fields);
+                if (!(value instanceof Boolean)) {
+                    return UNKNOWN;
+                }
+                return (Boolean) value ? asBoolean(r.evaluate(fields)) : Boolean.FALSE;
+            });
+        }
+        return left;
+    }
+
+    private Node comparison() {
+        Node left = value();
+        String op = peek();
+        if (op == null) {
+            return left;
+        }
+        switch (op) {
+            case "==": case "eq": case "!=": case "ne":
+                position++;
+                return equality(left, value(), op.equals("!=") || op.equals("ne"));
+            case "<": case "lt": case "<=": case "le": case ">": case "gt": case ">=": case "ge":
+                position++;
+                return ordering(left, value(), op);
+            case "=~": case "!~":
+                position++;
+                return regex(left, stringLiteral(value(), op), op.equals("!~"));
+            case "=^": case "!^":
+                position++;
+                return stringTest(left, stringLiteral(value(), op), String::startsWith, op.equals("!^"));
+            case "=$": case "!$":
+                position++;
+                return stringTest(left, stringLiteral(value(), op), String::endsWith, op.equals("!$"));
+            default:
+                return left;
+        }
+    }
+
+    private Node value() {
+        String token = next();
+        if (token.equals("(")) {
+            Node inner = or();
+            expect(")");
+            return inner;
+        }
+        if (token.equals("!") || token.equals("not")) {
+            // Binds tighter than comparisons, as in JEXL: !a == b is (!a) == b
+            Evaluator operand = logicalOperand(value(), "!").evaluator;
+            return new Node(Type.BOOLEAN, fields -> {
+                Object value = operand.evaluate(fields);
+                return value instanceof Boolean ? !(Boolean) value : UNKNOWN;
+            });
+        }
+        if (token.equals("-") && isNumber(peek())) {
+            return number("-" + next());
+        }
+        if (isNumber(token)) {
+            return number(token);
+        }
+        if (token.startsWith("'") || token.startsWith("\"")) {
+            String text = token.substring(1);
+            return new Node(Type.STRING, fields -> text, text);
+        }
+        switch (token) {
+            case "true":
+                return new Node(Type.BOOLEAN, fields -> Boolean.TRUE, Boolean.TRUE);
+            case "false":
+                return new Node(Type.BOOLEAN, fields -> Boolean.FALSE, Boolean.FALSE);
+            case "null":
+                return new Node(Type.NULL, fields -> null, null);
+            case "empty":
+                return function(ExpressionCompiler::empty, Type.BOOLEAN);
+            case "size":
+                return function(value -> value instanceof String ? ((String) value).length() : UNKNOWN, Type.NUMBER);
+            default:
+                return reference(token);
+        }
+    }
+
+    private Node function(ValueFunction body, Type type) {
+        expect("(");
+        Evaluator argument = path(identifier(next())).evaluator;
+        expect(")");
+        return new Node(type, fields -> {
+            Object value = argument.evaluate(fields);
+            return value == UNKNOWN ? UNKNOWN : body.apply(value);
+        });
+    }
+
+    /**
+     * A dotted path, optionally followed by a chain of string method calls.
+     */
+    private Node reference(String first) {
+        StringBuilder path = new StringBuilder(identifier(first));
+        while (".".equals(peek()) && isIdentifier(peek(1)) && !"(".equals(peek(2))) {
+            position++;
+            path.append('.').append(identifier(next()));
+        }
+        if ("(".equals(peek())) {
+            throw unsupported("function " + path);
+        }
+        Node node = path(path.toString());
+        while (accept(".")) {
+            node = method(node, next());
+        }
+        return node;
+    }
+
+    private Node path(String path) {
+        paths.add(path);
+        return new Node(Type.ANY, fields -> fields.containsKey(path) ? fields.get(path) : UNKNOWN);
+    }
+
+    private Node method(Node receiver, String name) {
+        expect("(");
+        List<String> arguments = new ArrayList<>();
+        while (!accept(")")) {
+            if (!arguments.isEmpty()) {
+                expect(",");
+            }
+            Node argument = value();
+            if (argument.type != Type.STRING || !argument.isLiteral()) {
+                throw unsupported("non-literal argument to " + name);
+            }
+            arguments.add((String) argument.constant);
+        }
+        Evaluator target = receiver.evaluator;
+        ValueFunction body = stringMethod(name, arguments);
+        Type type = name.equals("length") ? Type.NUMBER
+                : name.startsWith("to") || name.equals("trim") ? Type.STRING : Type.BOOLEAN;
+        return new Node(type, fields -> {
+            Object value = target.evaluate(fields);
+            return value instanceof String ? body.apply(value) : UNKNOWN;
+        });
+    }
+
+    private static ValueFunction stringMethod(String name, List<String> args) {
+        int arity = args.size();
+        if (arity == 0) {
+            switch (name) {
+                case "toLowerCase": return value -> ((String) value).toLowerCase();
+                case "toUpperCase": return value -> ((String) value).toUpperCase();
+                case "trim": return value -> ((String) value).trim();
+                case "length": return value -> ((String) value).length();
+                case "isEmpty": return value -> ((String) value).isEmpty();
+                default: break;
+            }
+        } else if (arity == 1) {
+            String arg = args.get(0);
+            switch (name) {
+                case "startsWith": return value -> ((String) value).startsWith(arg);
+                case "endsWith": return value -> ((String) value).endsWith(arg);
+                case "contains": return value -> ((String) value).contains(arg);
+                case "equalsIgnoreCase": return value -> ((String) value).equalsIgnoreCase(arg);
+                default: break;
+            }
+        }
+        throw unsupported("method " + name + " with " + arity + " arguments");
+    }
+
+    // ------------------------------------------------------------------
+    // Operators
+    // ------------------------------------------------------------------
+
+    private static Node equality(Node left, Node right, boolean negate) {
+        Evaluator l = left.evaluator;
+        Evaluator r = right.evaluator;
+        return new Node(Type.BOOLEAN, fields -> {
+            Object a = l.evaluate(fields);
+            Object b = a == UNKNOWN ? UNKNOWN : r.evaluate(fields);
+            if (b == UNKNOWN) {
+                return UNKNOWN;
+            }
+            Boolean equal;
+            if (a == null || b == null) {
+                equal = a == b;
+            } else if (a instanceof Number && b instanceof Number) {
+                Integer compared = compareNumbers((Number) a, (Number) b);
+                equal = compared == null ? null : compared == 0;
+            } else if (a instanceof String && b instanceof String || a instanceof Boolean && b instanceof Boolean) {
+                equal = a.equals(b);
+            } else {
+                equal = null; // JEXL coerces mixed types
+            }
+            return equal == null ? UNKNOWN : equal != negate;
+        });
+    }
+
+    private static Node ordering(Node left, Node right, String op) {
+        if (left.type == Type.NULL || right.type == Type.NULL) {
+            throw new ConfigException("Cannot use '" + op + "' with null");
+        }
+        Evaluator l = left.evaluator;
+        Evaluator r = right.evaluator;
+        return new Node(Type.BOOLEAN, fields -> {
+            Object a = l.evaluate(fields);
+            Object b = a == UNKNOWN ? UNKNOWN : r.evaluate(fields);
+            Integer compared = null;
+            if (a instanceof Number && b instanceof Number) {
+                compared = compareNumbers((Number) a, (Number) b);
+            } else if (a instanceof String && b instanceof String) {
+                compared = ((String) a).compareTo((String) b);
+            }
+            if (compared == null) {
+                return UNKNOWN;
+            }
+            switch (op) {
+                case "<": case "lt": return compared < 0;
+                case "<=": case "le": return compared <= 0;
+                case ">": case "gt": return compared > 0;
+                default: return compared >= 0;
+            }
+        });
+    }
+
+    private static Node regex(Node left, String regex, boolean negate) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new ConfigException("Invalid regular expression '" + regex + "': " + e.getDescription());
+        }
+        Evaluator l = left.evaluator;
+        return new Node(Type.BOOLEAN, fields -> {
+            Object value = l.evaluate(fields);
+            return value instanceof String ? pattern.matcher((String) value).matches() != negate : UNKNOWN;
+        });
+    }
+
+    private interface StringTest {
+        boolean test(String value, String operand);
+    }
+
+    private static Node stringTest(Node left, String operand, StringTest test, boolean negate) {
+        Evaluator l = left.evaluator;
+        return new Node(Type.BOOLEAN, fields -> {
+            Object value = l.evaluate(fields);
+            return value instanceof String ? test.test((String) value, operand) != negate : UNKNOWN;
+        });
+    }
+
+    private static Object asBoolean(Object value) {
+        return value instanceof Boolean ? value : UNKNOWN;
+    }
+
+    private static Object empty(Object value) {
+        if (value == null) {
+            return Boolean.TRUE;
+        }
+        return value instanceof String ? ((String) value).isEmpty() : UNKNOWN;
+    }
+
+    /**
+     * Compares like JEXL arithmetic: BigDecimal if either side is one, doubles
+     * if either side is floating point, longs otherwise.
+     *
+     * @return null for number types that are not handled
+     */
+    static Integer compareNumbers(Number a, Number b) {
+        if (a instanceof BigDecimal || b instanceof BigDecimal) {
+            BigDecimal x = toBigDecimal(a);
+            BigDecimal y = toBigDecimal(b);
+            return x == null || y == null ? null : x.compareTo(y);
+        }
+        if (isFloating(a) || isFloating(b)) {
+            if (!(isFloating(a) || isIntegral(a)) || !(isFloating(b) || isIntegral(b))) {
+                return null;
+            }
+            double x = a.doubleValue();
+            double y = b.doubleValue();
+            return x < y ? -1 : x > y ? 1 : 0;
+        }
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        return null;
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal) {
+            return (BigDecimal) n;
+        }
+        if (isIntegral(n)) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        return isFloating(n) ? new BigDecimal(n.toString()) : null;
+    }
+
+    private static boolean isFloating(Number n) {
+        return n instanceof Double || n instanceof Float;
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    // ------------------------------------------------------------------
+    // Validation helpers
+    // ------------------------------------------------------------------
+
+    private static Node logicalOperand(Node node, String op) {
+        if (node.type == Type.STRING || node.type == Type.NUMBER || node.type == Type.NULL) {
+            throw new ConfigException("Operand of '" + op + "' is not a boolean");
+        }
+        return node;
+    }
+
+    private static String stringLiteral(Node node, String op) {
+        if (node.type != Type.STRING || !node.isLiteral()) {
+            throw unsupported("'" + op + "' without a string literal");
+        }
+        return (String) node.constant;
+    }
+
+    private static Node number(String token) {
+        Number value;
+        if (token.indexOf('.') >= 0 || token.indexOf('e') >= 0 || token.indexOf('E') >= 0) {
+            value = Double.valueOf(token);
+        } else {
+            long parsed;
+            try {
+                parsed = Long.parseLong(token);
+            } catch (NumberFormatException e) {
+                throw unsupported("integer literal " + token);
+            }
+            value = parsed >= Integer.MIN_VALUE && parsed <= Integer.MAX_VALUE ? (Number) (int) parsed : (Number) parsed;
+        }
+        Number constant = value;
+        return new Node(Type.NUMBER, fields -> constant, constant);
+    }
+
+    private String identifier(String token) {
+        if (!isIdentifier(token) || RESERVED.contains(token)) {
+            throw unsupported("'" + token + "' as a path segment");
+        }
+        return token;
+    }
+
+    private static boolean isIdentifier(String token) {
+        if (token == null || token.isEmpty() || !(Character.isLetter(token.charAt(0)) || token.charAt(0) == '_')) {
+            return false;
+        }
+        for (int i = 1; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumber(String token) {
+        return token != null && !token.isEmpty() && Character.isDigit(token.charAt(0));
+    }
+
+    // ------------------------------------------------------------------
+    // Tokens
+    // ------------------------------------------------------------------
+
+    private String peek() {
+        return peek(0);
+    }
+
+    private String peek(int ahead) {
+        return position + ahead < tokens.size() ? tokens.get(position + ahead) : null;
+    }
+
+    private String next() {
+        if (position >= tokens.size()) {
+            throw unsupported("unexpected end of expression");
+        }
+        return tokens.get(position++);
+    }
+
+    private boolean accept(String token) {
+        if (token.equals(peek())) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw unsupported("expected '" + token + "'");
+        }
+    }
+
+    private static final List<String> OPERATORS = Arrays.asList(
+            "==", "!=", "<=", ">=", "=~", "!~", "=^", "!^", "=$", "!$", "&&", "||",
+            "<", ">", "!", "(", ")", ".", ",", "-");
+
+    /**
+     * Splits the expression into tokens. String literal tokens keep their
+     * opening quote as a marker and have escapes resolved.
+     */
+    static List<String> tokenize(String expression) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        outer:
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '\'' || c == '"') {
+                StringBuilder literal = new StringBuilder().append(c);
+                int j = i + 1;
+                while (j < length && expression.charAt(j) != c) {
+                    char ch = expression.charAt(j);
+                    if (ch == '\\') {
+                        if (j + 1 >= length || "\\'\"".indexOf(expression.charAt(j + 1)) < 0) {
+                            throw unsupported("escape sequence in string literal");
+                        }
+                        ch = expression.charAt(++j);
+                    }
+                    literal.append(ch);
+                    j++;
+                }
+                if (j >= length) {
+                    throw unsupported("unterminated string literal");
+                }
+                tokens.add(literal.toString());
+                i = j + 1;
+                continue;
+            }
+            if (Character.isDigit(c)) {
+                int j = i;
+                while (j < length && (Character.isDigit(expression.charAt(j)) || expression.charAt(j) == '.'
+                        && j + 1 < length && Character.isDigit(expression.charAt(j + 1)))) {
+                    j++;
+                }
+                if (j < length && Character.isLetter(expression.charAt(j))) {
+                    throw unsupported("number suffix");
+                }
+                tokens.add(expression.substring(i, j));
+                i = j;
+                continue;
+            }
+            if (Character.isLetter(c) || c == '_') {
+                int j = i;
+                while (j < length && (Character.isLetterOrDigit(expression.charAt(j)) || expression.charAt(j) == '_')) {
+                    j++;
+                }
+                tokens.add(expression.substring(i, j));
+                i = j;
+                continue;
+            }
+            for (String op : OPERATORS) {
+                if (expression.startsWith(op, i)) {
+                    tokens.add(op);
+                    i += op.length();
+                    continue outer;
+                }
+            }
+            throw unsupported("character '" + c + "'");
+        }
+        return tokens;
+    }
+
+    private static UnsupportedOperationException unsupported(String what) {
+        return new UnsupportedOperationException("Not in the compiled subset: " + what);
+    }
+}
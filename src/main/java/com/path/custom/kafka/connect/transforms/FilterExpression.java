@@ -0,0 +1,120 @@
+package com.path.custom.kafka.connect.transforms;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A filter expression prepared at configure time.
+ * <p>
+ * The expression is always parsed by JEXL, so syntax errors surface as
+ * before. If it is also within the subset handled by
+ * {@link ExpressionCompiler}, records are evaluated by the compiled closures
+ * and only go through the JEXL interpreter when the compiled form cannot
+ * decide them (see {@link #fallbacks()}).
+ */
+public final class FilterExpression {
+
+    private static final Logger log = LoggerFactory.getLogger(FilterExpression.class);
+
+    // One engine for all filter instances; its cache shares parsed scripts between tasks
+    private static final JexlEngine JEXL = new JexlBuilder().cache(512).create();
+
+    private final String source;
+    private final JexlExpression interpreted;
+    private final ExpressionCompiler.Compiled compiled;
+    private final Set<String> referencedPaths;
+    private final LongAdder fallbacks = new LongAdder();
+
+    private FilterExpression(String source, JexlExpression interpreted, ExpressionCompiler.Compiled compiled) {
+        this.source = source;
+        this.interpreted = interpreted;
+        this.compiled = compiled;
+        this.referencedPaths = referencedPaths(interpreted, compiled);
+    }
+
+    /**
+     * @throws org.apache.commons.jexl3.JexlException              if the expression is not valid JEXL
+     * @throws org.apache.kafka.common.config.ConfigException if it can never evaluate to a boolean
+     */
+    public static FilterExpression parse(String source) {
+        JexlExpression interpreted = JEXL.createExpression(source);
+        ExpressionCompiler.Compiled compiled;
+        try {
+            compiled = ExpressionCompiler.compile(source);
+            log.info("Compiled filter expression '{}' (paths {})", source, compiled.paths);
+        } catch (UnsupportedOperationException e) {
+            compiled = null;
+            log.info("Filter expression '{}' is interpreted by JEXL: {}", source, e.getMessage());
+        }
+        return new FilterExpression(source, interpreted, compiled);
+    }
+
+    /**
+     * Evaluates the expression against flattened document fields.
+     *
+     * @return the expression result, normally a Boolean; JEXL may return
+     * null or another type for expressions outside the compiled subset
+     */
+    public Object evaluate(Map<String, Object> fields) {
+        if (compiled != null) {
+            Object result = compiled.evaluator.evaluate(fields);
+            if (result != ExpressionCompiler.UNKNOWN) {
+                return result;
+            }
+            fallbacks.increment();
+        }
+        return interpreted.evaluate(new MapContext(fields));
+    }
+
+    /**
+     * Dotted paths the expression may read, as JEXL resolves them; records
+     * only need these keys of the flattened document.
+     *
+     * @return the paths, or null if JEXL does not report them
+     */
+    public Set<String> referencedPaths() {
+        return referencedPaths;
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Records of a compiled expression that had to be interpreted by JEXL.
+     */
+    public long fallbacks() {
+        return fallbacks.sum();
+    }
+
+    private static Set<String> referencedPaths(JexlExpression interpreted, ExpressionCompiler.Compiled compiled) {
+        if (!(interpreted instanceof JexlScript)) {
+            return null;
+        }
+        Set<String> paths = new LinkedHashSet<>();
+        for (List<String> variable : ((JexlScript) interpreted).getVariables()) {
+            paths.add(String.join(".", variable));
+        }
+        if (compiled != null) {
+            paths.addAll(compiled.paths);
+        }
+        return Collections.unmodifiableSet(paths);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
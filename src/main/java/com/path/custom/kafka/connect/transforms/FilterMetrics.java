@@ -0,0 +1,152 @@
+package com.path.custom.kafka.connect.transforms;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.Measurable;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Meter;
+import org.apache.kafka.common.utils.Time;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kafka metrics for one filter SMT instance, exported over JMX as
+ * {@code kafka.connect.smt:type=conditional-document-filter-metrics,filter=<n>}
+ * (or {@code type=conditional-document-router-metrics} for the router).
+ * <p>
+ * SMTs get no metrics context from the Connect worker, so all instances in
+ * the worker share one registry and are told apart by the {@code filter}
+ * tag. {@link #close()} removes the instance's sensors again.
+ */
+public class FilterMetrics implements AutoCloseable {
+
+    static final String FILTER_GROUP = "conditional-document-filter-metrics";
+    static final String ROUTER_GROUP = "conditional-document-router-metrics";
+    private static final Metrics METRICS = new Metrics(new MetricConfig(),
+            Collections.singletonList(new JmxReporter()), Time.SYSTEM,
+            new KafkaMetricsContext("kafka.connect.smt"));
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final String group;
+    private final Map<String, String> tags;
+    private final Sensor evalTime;
+    private final Sensor passed;
+    private final Sensor filtered;
+    private final Sensor errors;
+    private final Sensor fullParses;
+    private final List<Sensor> rules = new ArrayList<>();
+    private MetricName fallbacks;
+
+    public FilterMetrics() {
+        this(FILTER_GROUP);
+    }
+
+    FilterMetrics(String group) {
+        this.group = group;
+        String id = String.valueOf(INSTANCES.getAndIncrement());
+        this.tags = Collections.singletonMap("filter", id);
+
+        String prefix = "filter-" + id + "-";
+        this.evalTime = METRICS.sensor(prefix + "eval-time");
+        evalTime.add(name("eval-time-avg-ms", "Average time to parse and evaluate one record"), new Avg());
+        evalTime.add(name("eval-time-max-ms", "Maximum time to parse and evaluate one record"), new Max());
+
+        this.passed = recordSensor(prefix, "passed", "Records that matched the expression");
+        this.filtered = recordSensor(prefix, "filtered", "Records dropped because the expression was false");
+        this.errors = recordSensor(prefix, "errors", "Records dropped because they could not be evaluated");
+        this.fullParses = recordSensor(prefix, "full-parse", "Records flattened in full instead of reading only the referenced fields");
+    }
+
+    public void recordEvalTime(long startNanos) {
+        evalTime.record((System.nanoTime() - startNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public void passed() {
+        passed.record();
+    }
+
+    public void filtered() {
+        filtered.record();
+    }
+
+    public void error() {
+        errors.record();
+    }
+
+    public void fullParse() {
+        fullParses.record();
+    }
+
+    /**
+     * Exposes how many records the compiled forms of the expressions left to JEXL.
+     */
+    public void trackFallbacks(Collection<FilterExpression> expressions) {
+        fallbacks = name("jexl-fallback-total", "Records evaluated by the JEXL interpreter although the expression is compiled");
+        METRICS.addMetric(fallbacks, (Measurable) (config, now) -> {
+            long total = 0;
+            for (FilterExpression expression : expressions) {
+                total += expression.fallbacks();
+            }
+            return total;
+        });
+    }
+
+    /**
+     * Adds a {@code rule-matches} rate and total per rule, tagged with the rule name.
+     */
+    void trackRules(List<String> names) {
+        for (String rule : names) {
+            Map<String, String> ruleTags = new LinkedHashMap<>(tags);
+            ruleTags.put("rule", rule);
+            Sensor sensor = METRICS.sensor("filter-" + tags.get("filter") + "-rule-" + rule);
+            sensor.add(new Meter(
+                    METRICS.metricName("rule-matches-rate", group, "Records decided by the rule per second", ruleTags),
+                    METRICS.metricName("rule-matches-total", group, "Records decided by the rule", ruleTags)));
+            rules.add(sensor);
+        }
+    }
+
+    /**
+     * @param rule index of the rule in the list given to {@link #trackRules}
+     */
+    void ruleMatched(int rule) {
+        rules.get(rule).record();
+    }
+
+    @Override
+    public void close() {
+        for (Sensor sensor : new Sensor[]{evalTime, passed, filtered, errors, fullParses}) {
+            METRICS.removeSensor(sensor.name());
+        }
+        for (Sensor sensor : rules) {
+            METRICS.removeSensor(sensor.name());
+        }
+        rules.clear();
+        if (fallbacks != null) {
+            METRICS.removeMetric(fallbacks);
+        }
+    }
+
+    private Sensor recordSensor(String prefix, String outcome, String description) {
+        Sensor sensor = METRICS.sensor(prefix + outcome);
+        sensor.add(new Meter(name(outcome + "-rate", description + " per second"),
+                name(outcome + "-total", description)));
+        return sensor;
+    }
+
+    private MetricName name(String name, String description) {
+        return METRICS.metricName(name, group, description, tags);
+    }
+}
@@ -0,0 +1,292 @@
+package com.path.custom.kafka.connect.transforms;
+
+import com.couchbase.client.core.deps.com.fasterxml.jackson.core.JsonParser;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Reads only the flattened paths a filter expression refers to.
+ * <p>
+ * The result holds the same keys and values that
+ * {@code JsonFlattener.flattenAsMap} would produce for those paths and their
+ * prefixes: scalars keep the flattener's number types, and empty objects and
+ * arrays are kept as empty values. Members that are not on a referenced path
+ * are skipped without being materialized, and the parser stops as soon as
+ * every path is resolved.
+ * <p>
+ * {@code null} is returned whenever the document cannot be handled exactly
+ * (a non-object root, a non-empty array on a referenced path, an unsupported
+ * value type, or an empty member name at the root, whose members the
+ * flattener merges into the root keys); the caller then flattens the whole document as before.
+ * Because parsing may stop early, a member name that occurs twice may
+ * resolve to its first occurrence rather than the last, and malformed JSON
+ * after the last referenced member goes unnoticed.
+ */
+final class PathExtractor {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+    private static final class Node {
+        final String key;
+        final int id;
+        final Map<String, Node> children = new HashMap<>();
+        boolean terminal;
+
+        Node(String key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+
+    private final Node root;
+    private final int nodes;
+    private final int terminals;
+
+    private PathExtractor(Node root, int nodes, int terminals) {
+        this.root = root;
+        this.nodes = nodes;
+        this.terminals = terminals;
+    }
+
+    /**
+     * @param paths dotted paths, each segment a plain identifier
+     * @return the extractor, or null if a path cannot be matched against
+     * flattened keys (bracketed, quoted or numeric segments)
+     */
+    static PathExtractor of(Collection<String> paths) {
+        Node root = new Node(null, 0);
+        int nodes = 1;
+        int terminals = 0;
+        for (String path : paths) {
+            Node node = root;
+            for (String segment : path.split("\\.", -1)) {
+                if (!IDENTIFIER.matcher(segment).matches()) {
+                    return null;
+                }
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node(node == root ? segment : node.key + "." + segment, nodes++);
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+            if (!node.terminal) {
+                node.terminal = true;
+                terminals++;
+            }
+        }
+        return new PathExtractor(root, nodes, terminals);
+    }
+
+    /**
+     * Extracts the paths from a parser positioned before the document.
+     *
+     * @return flattened fields, or null if the document needs a full flatten
+     */
+    Map<String, Object> extract(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        Parse parse = new Parse();
+        return parse.object(parser, root) ? parse.fields : null;
+    }
+
+    /**
+     * Extracts the paths from a record value that is already a map, with the
+     * number types the JSON round trip of the full flatten would produce.
+     *
+     * @return flattened fields, or null if the value needs a full flatten
+     */
+    Map<String, Object> extract(Map<?, ?> document) {
+        if (document.containsKey("")) {
+            return null;
+        }
+        Map<String, Object> fields = new LinkedHashMap<>();
+        return collect(document, root, fields) ? fields : null;
+    }
+
+    private boolean collect(Map<?, ?> object, Node parent, Map<String, Object> fields) {
+        for (Node node : parent.children.values()) {
+            String name = node.key.substring(parent == root ? 0 : parent.key.length() + 1);
+            if (!object.containsKey(name)) {
+                continue;
+            }
+            Object value = object.get(name);
+            if (value instanceof Map) {
+                Map<?, ?> child = (Map<?, ?>) value;
+                if (child.isEmpty()) {
+                    fields.put(node.key, Collections.emptyMap());
+                } else if (!collect(child, node, fields)) {
+                    return false;
+                }
+            } else if (value instanceof Collection || value instanceof Object[]) {
+                boolean empty = value instanceof Collection ? ((Collection<?>) value).isEmpty() : ((Object[]) value).length == 0;
+                if (!empty) {
+                    return false;
+                }
+                fields.put(node.key, Collections.emptyList());
+            } else if (value == null || value instanceof String || value instanceof Boolean) {
+                fields.put(node.key, value);
+            } else if (value instanceof Number) {
+                Object number = normalize((Number) value);
+                if (number == null) {
+                    return false;
+                }
+                fields.put(node.key, number);
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * State of one streaming parse. A node is resolved once its value has
+     * been read, or once its parent object ended without it; the parse stops
+     * when no referenced path is left unresolved.
+     */
+    private final class Parse {
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        final boolean[] resolved = new boolean[nodes];
+        int remaining = terminals;
+
+        /**
+         * Reads the members of an object whose START_OBJECT was consumed.
+         *
+         * @return false if the document needs a full flatten
+         */
+        boolean object(JsonParser parser, Node parent) throws IOException {
+            boolean empty = true;
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                empty = false;
+                String name = parser.getCurrentName();
+                if (parent == root && name.isEmpty()) {
+                    return false;
+                }
+                Node node = parent.children.get(name);
+                token = parser.nextToken();
+                if (node == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (!value(parser, token, node)) {
+                    return false;
+                }
+                resolve(node);
+                if (remaining == 0) {
+                    return true;
+                }
+            }
+            if (token != JsonToken.END_OBJECT) {
+                throw new IOException("Unexpected token " + token + " in object");
+            }
+            // Empty objects are kept by the flattener, nested members are not
+            if (empty && parent != root) {
+                fields.put(parent.key, Collections.emptyMap());
+            }
+            resolve(parent);
+            return true;
+        }
+
+        private boolean value(JsonParser parser, JsonToken token, Node node) throws IOException {
+            switch (token) {
+                case START_OBJECT:
+                    return object(parser, node);
+                case START_ARRAY:
+                    if (parser.nextToken() != JsonToken.END_ARRAY) {
+                        return false;
+                    }
+                    fields.put(node.key, Collections.emptyList());
+                    return true;
+                case VALUE_STRING:
+                    fields.put(node.key, parser.getText());
+                    return true;
+                case VALUE_NUMBER_INT:
+                    fields.put(node.key, parser.getNumberValue());
+                    return true;
+                case VALUE_NUMBER_FLOAT:
+                    Object number = flattened(parser.getDoubleValue());
+                    fields.put(node.key, number);
+                    return number != null;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    fields.put(node.key, token == JsonToken.VALUE_TRUE);
+                    return true;
+                case VALUE_NULL:
+                    fields.put(node.key, null);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private void resolve(Node node) {
+            if (resolved[node.id]) {
+                return;
+            }
+            resolved[node.id] = true;
+            if (node.terminal) {
+                remaining--;
+            }
+            for (Node child : node.children.values()) {
+                resolve(child);
+            }
+        }
+    }
+
+    /**
+     * The number the flattener reads back after Jackson wrote {@code value},
+     * or null if that cannot be told without the round trip.
+     */
+    private static Object normalize(Number value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger) {
+            return flattened(new BigDecimal(value.toString()));
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return Double.isFinite(value.doubleValue()) ? flattened(Double.parseDouble(value.toString())) : null;
+        }
+        // BigDecimal and anything else: the written form depends on Jackson's node settings
+        return null;
+    }
+
+    /**
+     * The number the flattener gives a JSON float: its Jackson tree holds a
+     * double, read back through {@link BigDecimal#valueOf(double)}.
+     */
+    private static Object flattened(double value) {
+        return Double.isFinite(value) ? flattened(BigDecimal.valueOf(value)) : null;
+    }
+
+    /**
+     * Narrowing applied by the flattener (json-base {@code toJavaNumber}),
+     * so that for example {@code 1.0E10} becomes a BigInteger and
+     * {@code 100.0} a Double.
+     */
+    private static Number flattened(BigDecimal value) {
+        if (BigDecimal.valueOf(value.intValue()).equals(value)) {
+            return value.intValue();
+        }
+        if (BigDecimal.valueOf(value.longValue()).equals(value)) {
+            return value.longValue();
+        }
+        if (value.scale() <= 0) {
+            return value.toBigInteger();
+        }
+        BigDecimal asDouble = new BigDecimal(String.valueOf(value.doubleValue()));
+        if (asDouble.compareTo(value) == 0 && asDouble.scale() == value.scale()) {
+            return value.doubleValue();
+        }
+        return value;
+    }
+}